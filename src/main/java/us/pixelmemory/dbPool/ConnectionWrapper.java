@@ -10,6 +10,7 @@ import java.sql.NClob;
 import java.sql.PreparedStatement;
 import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLWarning;
 import java.sql.SQLXML;
 import java.sql.Savepoint;
@@ -18,9 +19,12 @@ import java.sql.Struct;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import us.pixelmemory.pool.Lease;
 import us.pixelmemory.pool.Pool;
+import us.pixelmemory.pool.Priority;
 
 /**
  * Kevin McMurtrie
@@ -47,24 +51,61 @@ public class ConnectionWrapper implements Connection {
 	public static Restoration BASIC_RESTORATION= c -> {c.setAutoCommit(true); c.clearWarnings();};
 	public static Restoration NO_RESTORATION= c -> {};
 
-	private final Pool<Connection, SQLException> pool;
+	private final Lease<Connection> lease;
 	private final Restoration restoration;
+	private final boolean hasDeadline;
+	private final long deadlineNanos;
 	private Connection rawConnection;
 	private boolean isDamaged = false;
+	private long lastSuccess = 0; // Last successful round trip, to skip validation of busy connections
 
 	public ConnectionWrapper(final Pool<Connection, SQLException> pool, final Restoration restoration) throws SQLException {
-		this.pool = pool;
+		this(pool, restoration, Priority.NORMAL);
+	}
+
+	public ConnectionWrapper(final Pool<Connection, SQLException> pool, final Restoration restoration, final Priority priority) throws SQLException {
 		this.restoration = restoration;
+		hasDeadline = false;
+		deadlineNanos = 0;
 		try {
-			rawConnection = pool.get();
+			lease = pool.lease(priority);
 		} catch (final TimeoutException e) {
 			throw new SQLException("Database not available", e);
 		}
+		rawConnection = lease.get();
+	}
+
+	/**
+	 * Wait only until the deadline for a connection.  Statements created afterwards default to
+	 * a query timeout of the time remaining.
+	 * @param deadlineNanos System.nanoTime() deadline
+	 */
+	public ConnectionWrapper(final Pool<Connection, SQLException> pool, final Restoration restoration, final Priority priority, final long deadlineNanos) throws SQLException {
+		this.restoration = restoration;
+		hasDeadline = true;
+		this.deadlineNanos = deadlineNanos;
+		try {
+			lease = pool.lease(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS, priority);
+		} catch (final TimeoutException e) {
+			throw new SQLTimeoutException("Database not available before deadline", e);
+		}
+		rawConnection = lease.get();
+	}
+
+	/**
+	 * Wrap a connection that was already taken from the pool
+	 */
+	ConnectionWrapper(final Lease<Connection> lease, final Restoration restoration) {
+		this.lease = lease;
+		this.restoration = restoration;
+		hasDeadline = false;
+		deadlineNanos = 0;
+		rawConnection = lease.get();
 	}
 
 	@Override
 	public final String toString() {
-		return "ConnectionWrapper [" + pool.getName() + "] " + rawConnection;
+		return "ConnectionWrapper [" + lease.getPool().getName() + "] " + rawConnection;
 	}
 
 	/**
@@ -91,7 +132,7 @@ public class ConnectionWrapper implements Connection {
 	@Override
 	public final Statement createStatement() throws SQLException {
 		try {
-			return new StatementWrapper<>(getConnection().createStatement(), this);
+			return new StatementWrapper<>(bounded(getConnection().createStatement()), this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -100,7 +141,7 @@ public class ConnectionWrapper implements Connection {
 	@Override
 	public final PreparedStatement prepareStatement(final String sql) throws SQLException {
 		try {
-			return new PreparedStatementWrapper<>(getConnection().prepareStatement(sql), this);
+			return new PreparedStatementWrapper<>(bounded(getConnection().prepareStatement(sql)), this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -109,7 +150,7 @@ public class ConnectionWrapper implements Connection {
 	@Override
 	public final CallableStatement prepareCall(final String sql) throws SQLException {
 		try {
-			return new CallableStatementWrapper<>(getConnection().prepareCall(sql), this);
+			return new CallableStatementWrapper<>(bounded(getConnection().prepareCall(sql)), this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -146,6 +187,7 @@ public class ConnectionWrapper implements Connection {
 	public final void commit() throws SQLException {
 		try {
 			getConnection().commit();
+			succeeded();
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -155,6 +197,7 @@ public class ConnectionWrapper implements Connection {
 	public final void rollback() throws SQLException {
 		try {
 			getConnection().rollback();
+			succeeded();
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -172,9 +215,9 @@ public class ConnectionWrapper implements Connection {
 				throw e;
 			} finally {
 				if (!isDamaged) {
-					pool.takeBack(c);
+					lease.close(lastSuccess);
 				} else {
-					pool.abandon(c);
+					lease.abandon();
 				}
 			}
 		}
@@ -261,7 +304,7 @@ public class ConnectionWrapper implements Connection {
 	@Override
 	public final Statement createStatement(final int resultSetType, final int resultSetConcurrency) throws SQLException {
 		try {
-			return new StatementWrapper<>(getConnection().createStatement(resultSetType, resultSetConcurrency), this);
+			return new StatementWrapper<>(bounded(getConnection().createStatement(resultSetType, resultSetConcurrency)), this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -270,7 +313,7 @@ public class ConnectionWrapper implements Connection {
 	@Override
 	public final PreparedStatement prepareStatement(final String sql, final int resultSetType, final int resultSetConcurrency) throws SQLException {
 		try {
-			return new PreparedStatementWrapper<>(getConnection().prepareStatement(sql, resultSetType, resultSetConcurrency), this);
+			return new PreparedStatementWrapper<>(bounded(getConnection().prepareStatement(sql, resultSetType, resultSetConcurrency)), this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -279,7 +322,7 @@ public class ConnectionWrapper implements Connection {
 	@Override
 	public final CallableStatement prepareCall(final String sql, final int resultSetType, final int resultSetConcurrency) throws SQLException {
 		try {
-			return new CallableStatementWrapper<>(getConnection().prepareCall(sql, resultSetType, resultSetConcurrency), this);
+			return new CallableStatementWrapper<>(bounded(getConnection().prepareCall(sql, resultSetType, resultSetConcurrency)), this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -348,7 +391,7 @@ public class ConnectionWrapper implements Connection {
 	@Override
 	public final Statement createStatement(final int resultSetType, final int resultSetConcurrency, final int resultSetHoldability) throws SQLException {
 		try {
-			return new StatementWrapper<>(getConnection().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability), this);
+			return new StatementWrapper<>(bounded(getConnection().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability)), this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -362,7 +405,7 @@ public class ConnectionWrapper implements Connection {
 			final int resultSetHoldability) throws SQLException {
 		try {
 			return new PreparedStatementWrapper<>(
-					getConnection().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability), this);
+					bounded(getConnection().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability)), this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -375,7 +418,7 @@ public class ConnectionWrapper implements Connection {
 			final int resultSetConcurrency,
 			final int resultSetHoldability) throws SQLException {
 		try {
-			return new CallableStatementWrapper<>(getConnection().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability),
+			return new CallableStatementWrapper<>(bounded(getConnection().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability)),
 					this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
@@ -385,7 +428,7 @@ public class ConnectionWrapper implements Connection {
 	@Override
 	public final PreparedStatement prepareStatement(final String sql, final int autoGeneratedKeys) throws SQLException {
 		try {
-			return new PreparedStatementWrapper<>(getConnection().prepareStatement(sql, autoGeneratedKeys), this);
+			return new PreparedStatementWrapper<>(bounded(getConnection().prepareStatement(sql, autoGeneratedKeys)), this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -394,7 +437,7 @@ public class ConnectionWrapper implements Connection {
 	@Override
 	public final PreparedStatement prepareStatement(final String sql, final int[] columnIndexes) throws SQLException {
 		try {
-			return new PreparedStatementWrapper<>(getConnection().prepareStatement(sql, columnIndexes), this);
+			return new PreparedStatementWrapper<>(bounded(getConnection().prepareStatement(sql, columnIndexes)), this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -403,7 +446,7 @@ public class ConnectionWrapper implements Connection {
 	@Override
 	public final PreparedStatement prepareStatement(final String sql, final String[] columnNames) throws SQLException {
 		try {
-			return new PreparedStatementWrapper<>(getConnection().prepareStatement(sql, columnNames), this);
+			return new PreparedStatementWrapper<>(bounded(getConnection().prepareStatement(sql, columnNames)), this);
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -450,6 +493,9 @@ public class ConnectionWrapper implements Connection {
 		try {
 			final boolean valid = getConnection().isValid(timeout);
 			isDamaged |= !valid;
+			if (valid) {
+				succeeded();
+			}
 			return valid;
 		} catch (final SQLException e) {
 			throw interceptError(e);
@@ -539,6 +585,30 @@ public class ConnectionWrapper implements Connection {
 		return getConnection().getNetworkTimeout();
 	}
 
+	/**
+	 * Apply the time remaining before the deadline as the default query timeout
+	 */
+	private <S extends Statement> S bounded(final S stm) throws SQLException {
+		if (hasDeadline) {
+			final long remaining = deadlineNanos - System.nanoTime();
+			if (remaining <= 0) {
+				stm.close();
+				throw new SQLTimeoutException("Deadline passed");
+			}
+			// Round up because 0 means no timeout.  No overflow for a far deadline.
+			final long seconds = TimeUnit.NANOSECONDS.toSeconds(remaining) + (((remaining % 1_000_000_000L) != 0) ? 1 : 0);
+			stm.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, seconds));
+		}
+		return stm;
+	}
+
+	/**
+	 * Record a successful round trip to the database
+	 */
+	final void succeeded() {
+		lastSuccess = System.currentTimeMillis();
+	}
+
 	private Connection getConnection() throws SQLException {
 		if (rawConnection == null) {
 			throw new SQLException("Closed");
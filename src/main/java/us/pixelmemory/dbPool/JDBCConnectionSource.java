@@ -5,18 +5,22 @@ import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import us.pixelmemory.pool.PoolSource;
 
+/**
+ * Driver caches are copy-on-write maps updated by CAS.  There are no monitors here so a virtual thread
+ * opening a connection never pins its carrier.  A race may look up the same driver twice, which is harmless.
+ */
 public class JDBCConnectionSource implements PoolSource<Connection, SQLException> {
-	private static final ConcurrentHashMap<String, CacheElement<Driver>> driverByName = new ConcurrentHashMap<>();
-	private static final ConcurrentHashMap<String, CacheElement<Driver>> driverByUrl = new ConcurrentHashMap<>();
+	private static final AtomicReference<Map<String, WeakReference<Driver>>> driverByName = new AtomicReference<>(Collections.emptyMap());
+	private static final AtomicReference<Map<String, WeakReference<Driver>>> driverByUrl = new AtomicReference<>(Collections.emptyMap());
 
 	private final JDBCConnectionSettings settings;
 
@@ -51,19 +55,8 @@ public class JDBCConnectionSource implements PoolSource<Connection, SQLException
 
 	@Override
 	public void shutdown() {
-		for (Collection<CacheElement<Driver>> cache : Arrays.asList(driverByName.values(), driverByUrl.values())) {
-			final Iterator<CacheElement<Driver>> itr = cache.iterator();
-			while (itr.hasNext()) {
-				final CacheElement<Driver> ce = itr.next();
-				final boolean remove;
-				synchronized (ce) {
-					remove = (ce.ref != null) && (ce.ref.get() == null);
-				}
-				if (remove) {
-					itr.remove();
-				}
-			}
-		}
+		purge(driverByName);
+		purge(driverByUrl);
 	}
 
 	protected Driver getDriver() throws SQLException {
@@ -77,57 +70,70 @@ public class JDBCConnectionSource implements PoolSource<Connection, SQLException
 	}
 
 	private static Driver getDriverByName(final String driverClass) throws SQLException {
-		final CacheElement<Driver> c = driverByName.computeIfAbsent(driverClass, x -> new CacheElement<>());
-
-		Driver d;
-		try {
-			synchronized (c) {
-				d = (c.ref != null) ? c.ref.get() : null;
-				if (d == null) {
-					@SuppressWarnings("unchecked")
-					final Class<Driver> dClass = (Class<Driver>) Class.forName(driverClass);
-
-					final Enumeration<Driver> loadedDrivers = DriverManager.getDrivers();
-					while (loadedDrivers.hasMoreElements()) {
-						final Driver loadedDriver = loadedDrivers.nextElement();
-						if (dClass.equals(loadedDriver.getClass())) {
-							d = loadedDriver;
-							break;
-						}
-					}
-
-					if (d == null) {
-						d = dClass.newInstance();
+		Driver d = cached(driverByName, driverClass);
+		if (d == null) {
+			try {
+				@SuppressWarnings("unchecked")
+				final Class<Driver> dClass = (Class<Driver>) Class.forName(driverClass);
+
+				final Enumeration<Driver> loadedDrivers = DriverManager.getDrivers();
+				while (loadedDrivers.hasMoreElements()) {
+					final Driver loadedDriver = loadedDrivers.nextElement();
+					if (dClass.equals(loadedDriver.getClass())) {
+						d = loadedDriver;
+						break;
 					}
+				}
 
-					c.ref = new WeakReference<>(d);
+				if (d == null) {
+					d = dClass.newInstance();
 				}
+			} catch (ClassNotFoundException | InstantiationException | IllegalAccessException err) {
+				throw (SQLException) new SQLException("Misconfiguration", "08001").initCause(err);
 			}
-		} catch (ClassNotFoundException | InstantiationException | IllegalAccessException err) {
-			throw (SQLException) new SQLException("Misconfiguration", "08001").initCause(err);
+			d = cache(driverByName, driverClass, d);
 		}
 		
 		return d;
 	}
 
 	private static Driver getDriverByUrl(final String url) throws SQLException {
-		final CacheElement<Driver> c = driverByUrl.computeIfAbsent(url, x -> new CacheElement<>());
-		
-		Driver d;
-		synchronized (c) {
-			d = (c.ref != null) ? c.ref.get() : null;
-			if (d == null) {
-				d = DriverManager.getDriver(url);
-				c.ref = new WeakReference<>(d);
-			}
+		Driver d = cached(driverByUrl, url);
+		if (d == null) {
+			d = cache(driverByUrl, url, DriverManager.getDriver(url));
 		}
 		return d;
 	}
 
-	private static class CacheElement<T> {
-		CacheElement() {
+	private static Driver cached(final AtomicReference<Map<String, WeakReference<Driver>>> cache, final String key) {
+		final WeakReference<Driver> ref = cache.get().get(key);
+		return (ref != null) ? ref.get() : null;
+	}
+
+	/**
+	 * @return The cached Driver, which is the one supplied unless another thread won a race
+	 */
+	private static Driver cache(final AtomicReference<Map<String, WeakReference<Driver>>> cache, final String key, final Driver d) {
+		while (true) {
+			final Map<String, WeakReference<Driver>> from = cache.get();
+			final WeakReference<Driver> ref = from.get(key);
+			final Driver existing = (ref != null) ? ref.get() : null;
+			if (existing != null) {
+				return existing;
+			}
+			final Map<String, WeakReference<Driver>> to = new HashMap<>(from);
+			to.put(key, new WeakReference<>(d));
+			if (cache.compareAndSet(from, to)) {
+				return d;
+			}
 		}
+	}
 
-		WeakReference<T> ref;
+	private static void purge(final AtomicReference<Map<String, WeakReference<Driver>>> cache) {
+		cache.updateAndGet(from -> {
+			final Map<String, WeakReference<Driver>> to = new HashMap<>(from);
+			to.values().removeIf(ref -> ref.get() == null);
+			return to;
+		});
 	}
 }
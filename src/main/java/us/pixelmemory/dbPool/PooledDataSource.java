@@ -5,6 +5,11 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
@@ -13,6 +18,8 @@ import org.slf4j.LoggerFactory;
 import us.pixelmemory.dbPool.ConnectionWrapper.Restoration;
 import us.pixelmemory.pool.Pool;
 import us.pixelmemory.pool.PoolSettings;
+import us.pixelmemory.pool.PoolStats;
+import us.pixelmemory.pool.Priority;
 
 import javax.sql.DataSource;
 
@@ -25,6 +32,7 @@ public class PooledDataSource implements DataSource {
 	private final Restoration restoration;
 	private final Logger log;
 	private volatile boolean shutdown= false;
+	private final ThreadLocal<Priority> threadPriority = ThreadLocal.withInitial(() -> Priority.NORMAL);
 
 	
 	public PooledDataSource(String name, PoolSettings poolSettings, JDBCConnectionSettings jdbcSettings, final Restoration restoration) {
@@ -33,6 +41,9 @@ public class PooledDataSource implements DataSource {
 		this.jdbcSettings = jdbcSettings;
 		this.restoration = restoration;
 		log = LoggerFactory.getLogger(getClass().getName() + '.' + name);
+		// Leaks and call sites are reported where the application asked for the connection
+		poolSettings.addSkipFrames(PooledDataSource.class.getName());
+		poolSettings.addSkipFrames(ConnectionWrapper.class.getName());
 	}
 
 	@Override
@@ -76,7 +87,87 @@ public class PooledDataSource implements DataSource {
 
 	@Override
 	public Connection getConnection() throws SQLException {
-		return new ConnectionWrapper(getPool(), restoration);
+		return getConnection(threadPriority.get());
+	}
+
+	/**
+	 * Get a connection ahead of, or behind, other waiting callers
+	 */
+	public Connection getConnection(final Priority priority) throws SQLException {
+		return new ConnectionWrapper(getPool(), restoration, priority);
+	}
+
+	/**
+	 * Wait no longer than the timeout for a connection.  Statements default to a query timeout of the time remaining.
+	 */
+	public Connection getConnection(final long timeout, final TimeUnit unit) throws SQLException {
+		return getConnectionBy(System.nanoTime() + unit.toNanos(timeout));
+	}
+
+	/**
+	 * Wait only until the deadline for a connection.  Statements default to a query timeout of the time remaining.
+	 * @param deadlineNanos System.nanoTime() deadline of the caller's request
+	 */
+	public Connection getConnectionBy(final long deadlineNanos) throws SQLException {
+		return new ConnectionWrapper(getPool(), restoration, threadPriority.get(), deadlineNanos);
+	}
+
+	/**
+	 * Set the priority for this thread's getConnection(), getConnectionAsync(), and getConnections() calls
+	 * @param priority Priority, or null for the default
+	 */
+	public void setThreadPriority(final Priority priority) {
+		if (priority != null) {
+			threadPriority.set(priority);
+		} else {
+			threadPriority.remove();
+		}
+	}
+
+	public Priority getThreadPriority() {
+		return threadPriority.get();
+	}
+
+	/**
+	 * Get a connection without blocking.  The future fails with an SQLException when no connection
+	 * arrives within giveUpMillis, which setLoginTimeout() also sets.  Cancel the future to stop waiting.
+	 * Unless a connection is ready now, the future completes on a pool executor thread.
+	 */
+	public CompletableFuture<Connection> getConnectionAsync() {
+		final Pool<Connection, SQLException> p = getPool();
+		final CompletableFuture<Connection> raw = p.getAsync(poolSettings.getGiveUpMillis(), threadPriority.get());
+		final CompletableFuture<Connection> wrapped = new CompletableFuture<>();
+		raw.whenComplete((c, err) -> {
+			if (err != null) {
+				wrapped.completeExceptionally((err instanceof TimeoutException) ? new SQLException("Database not available", err) : err);
+			} else if (!wrapped.complete(new ConnectionWrapper(p.toLease(c), restoration))) {
+				p.takeBack(c); // Cancelled meanwhile
+			}
+		});
+		wrapped.whenComplete((c, err) -> {
+			if (wrapped.isCancelled()) {
+				raw.cancel(false);
+			}
+		});
+		return wrapped;
+	}
+
+	/**
+	 * Get n connections, all or nothing, for a batch job
+	 */
+	public List<Connection> getConnections(final int n) throws SQLException {
+		final Pool<Connection, SQLException> p = getPool();
+		final List<Connection> raw;
+		try {
+			raw = p.getMany(n, poolSettings.getGiveUpMillis(), threadPriority.get());
+		} catch (final TimeoutException e) {
+			throw new SQLException("Database not available", e);
+		}
+		final List<Connection> wrapped = new ArrayList<>(raw.size());
+		for (final Connection c : raw) {
+			wrapped.add(new ConnectionWrapper(p.toLease(c), restoration));
+		}
+		return wrapped;
 	}
 
 	@Override
@@ -95,8 +186,20 @@ public class PooledDataSource implements DataSource {
 		resetPool();
 	}
 	
+	/**
+	 * Allow use after shutdown() and start opening minIdle connections in the background
+	 */
 	public void startUp() {
+		startUpAsync();
+	}
+	
+	/**
+	 * Allow use after shutdown() and open minIdle connections in parallel before traffic arrives
+	 * @return Future that completes when the connections are open
+	 */
+	public CompletableFuture<Void> startUpAsync() {
 		shutdown= false;
+		return getPool().warmUp();
 	}
 
 	public String getName() {
@@ -118,6 +221,31 @@ public class PooledDataSource implements DataSource {
 		return (p != null) ? p.countAvailable() : 0;
 	}
 
+	public int countQueuedCreate() {
+		final Pool<?,?> p = poolRef.get();
+		return (p != null) ? p.countQueuedCreate() : 0;
+	}
+
+	public int countQueuedValidate() {
+		final Pool<?,?> p = poolRef.get();
+		return (p != null) ? p.countQueuedValidate() : 0;
+	}
+
+	public int countQueuedClose() {
+		final Pool<?,?> p = poolRef.get();
+		return (p != null) ? p.countQueuedClose() : 0;
+	}
+
+	public int countReserved() {
+		final Pool<?,?> p = poolRef.get();
+		return (p != null) ? p.countReserved() : 0;
+	}
+
+	public int getLimit() {
+		final Pool<?,?> p = poolRef.get();
+		return (p != null) ? p.getLimit() : poolSettings.getMaxOpen();
+	}
+
 	public int size() {
 		final Pool<?,?> p = poolRef.get();
 		return (p != null) ? p.size() : 0;
@@ -128,6 +256,14 @@ public class PooledDataSource implements DataSource {
 		return (p != null) ? p.countOpening() : 0;
 	}
 
+	/**
+	 * @return Counts of the pool, or null if it hasn't started
+	 */
+	public PoolStats getStats() {
+		final Pool<?,?> p = poolRef.get();
+		return (p != null) ? p.getStats() : null;
+	}
+
 	private Pool<Connection, SQLException> getPool() {
 		while (true) {
 			Pool<Connection, SQLException> p = poolRef.get();
@@ -33,7 +33,9 @@ public class PreparedStatementWrapper<STM extends PreparedStatement> extends Sta
 	@Override
 	public final ResultSet executeQuery() throws SQLException {
 		try {
-			return stm.executeQuery();
+			final ResultSet result = stm.executeQuery();
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -42,7 +44,9 @@ public class PreparedStatementWrapper<STM extends PreparedStatement> extends Sta
 	@Override
 	public final int executeUpdate() throws SQLException {
 		try {
-			return stm.executeUpdate();
+			final int result = stm.executeUpdate();
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -152,7 +156,9 @@ public class PreparedStatementWrapper<STM extends PreparedStatement> extends Sta
 	@Override
 	public final boolean execute() throws SQLException {
 		try {
-			return stm.execute();
+			final boolean result = stm.execute();
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -40,7 +40,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final ResultSet executeQuery(final String sql) throws SQLException {
 		try {
-			return stm.executeQuery(sql);
+			final ResultSet result = stm.executeQuery(sql);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -49,7 +51,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final int executeUpdate(final String sql) throws SQLException {
 		try {
-			return stm.executeUpdate(sql);
+			final int result = stm.executeUpdate(sql);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -122,7 +126,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final boolean execute(final String sql) throws SQLException {
 		try {
-			return stm.execute(sql);
+			final boolean result = stm.execute(sql);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -206,7 +212,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final int[] executeBatch() throws SQLException {
 		try {
-			return stm.executeBatch();
+			final int[] result = stm.executeBatch();
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -238,7 +246,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final int executeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
 		try {
-			return stm.executeUpdate(sql, autoGeneratedKeys);
+			final int result = stm.executeUpdate(sql, autoGeneratedKeys);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -247,7 +257,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final int executeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
 		try {
-			return stm.executeUpdate(sql, columnIndexes);
+			final int result = stm.executeUpdate(sql, columnIndexes);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -256,7 +268,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final int executeUpdate(final String sql, final String[] columnNames) throws SQLException {
 		try {
-			return stm.executeUpdate(sql, columnNames);
+			final int result = stm.executeUpdate(sql, columnNames);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -265,7 +279,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final boolean execute(final String sql, final int autoGeneratedKeys) throws SQLException {
 		try {
-			return stm.execute(sql, autoGeneratedKeys);
+			final boolean result = stm.execute(sql, autoGeneratedKeys);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -274,7 +290,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final boolean execute(final String sql, final int[] columnIndexes) throws SQLException {
 		try {
-			return stm.execute(sql, columnIndexes);
+			final boolean result = stm.execute(sql, columnIndexes);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -283,7 +301,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final boolean execute(final String sql, final String[] columnNames) throws SQLException {
 		try {
-			return stm.execute(sql, columnNames);
+			final boolean result = stm.execute(sql, columnNames);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -337,7 +357,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final long[] executeLargeBatch() throws SQLException {
 		try {
-			return stm.executeLargeBatch();
+			final long[] result = stm.executeLargeBatch();
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -346,7 +368,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final long executeLargeUpdate(final String sql) throws SQLException {
 		try {
-			return stm.executeLargeUpdate(sql);
+			final long result = stm.executeLargeUpdate(sql);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -355,7 +379,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final long executeLargeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
 		try {
-			return stm.executeLargeUpdate(sql, autoGeneratedKeys);
+			final long result = stm.executeLargeUpdate(sql, autoGeneratedKeys);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -364,7 +390,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final long executeLargeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
 		try {
-			return stm.executeLargeUpdate(sql, columnIndexes);
+			final long result = stm.executeLargeUpdate(sql, columnIndexes);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
@@ -373,7 +401,9 @@ public class StatementWrapper<STM extends Statement> implements Statement {
 	@Override
 	public final long executeLargeUpdate(final String sql, final String[] columnNames) throws SQLException {
 		try {
-			return stm.executeLargeUpdate(sql, columnNames);
+			final long result = stm.executeLargeUpdate(sql, columnNames);
+			con.succeeded();
+			return result;
 		} catch (final SQLException e) {
 			throw interceptError(e);
 		}
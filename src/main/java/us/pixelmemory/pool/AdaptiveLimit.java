@@ -0,0 +1,94 @@
+package us.pixelmemory.pool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gradient limit on open elements, like TCP congestion control.
+ * Hold time is the latency signal and waiting callers are the demand signal.
+ * The limit is multiplied by longTermHold / shortTermHold (clamped, with tolerance) and
+ * grows by sqrt(limit) when there's demand.  A slow database raises hold time so the limit drops.
+ *
+ * Samples may come from any thread.  update() is for the service thread.
+ */
+final class AdaptiveLimit {
+	static final long INTERVAL_MILLIS = 250;
+	private static final double TOLERANCE = 1.5;
+	private static final double MIN_GRADIENT = 0.5;
+	private static final double SHRINK_SMOOTHING = 0.2;
+	private static final double LONG_TERM_WEIGHT = 0.05;
+	private static final double SHORT_TERM_WEIGHT = 0.5;
+
+	private final int min;
+	private final int max;
+	private final LongAdder holdNanos = new LongAdder();
+	private final LongAdder holds = new LongAdder();
+	private final LongAdder waits = new LongAdder();
+	private volatile int limit;
+	private double estimate;
+	private double longTermHold = Double.NaN;
+	private double shortTermHold = Double.NaN;
+	private long lastUpdate = 0;
+
+	AdaptiveLimit(final int min, final int max) {
+		this.max = Math.max(1, max);
+		this.min = Math.max(1, Math.min(min, this.max));
+		limit = this.min;
+		estimate = this.min;
+	}
+
+	void sampleHold(final long nanos) {
+		holdNanos.add(nanos);
+		holds.increment();
+	}
+
+	void sampleWait() {
+		waits.increment();
+	}
+
+	int limit() {
+		return limit;
+	}
+
+	/**
+	 * @param waiting Callers are waiting now
+	 * @return Milliseconds until the next update is due
+	 */
+	long update(final long now, final boolean waiting) {
+		final long due = (lastUpdate + INTERVAL_MILLIS) - now;
+		if (due > 0) {
+			return due;
+		}
+		lastUpdate = now;
+
+		final long count = holds.sumThenReset();
+		final long totalHold = holdNanos.sumThenReset();
+		final boolean demand = waiting || (waits.sumThenReset() > 0);
+
+		double gradient = 1.0;
+		if (count > 0) {
+			final double hold = Math.max(1.0, (double) totalHold / count);
+			shortTermHold = Double.isNaN(shortTermHold) ? hold : (shortTermHold * (1 - SHORT_TERM_WEIGHT)) + (hold * SHORT_TERM_WEIGHT);
+			longTermHold = Double.isNaN(longTermHold) ? hold : (longTermHold * (1 - LONG_TERM_WEIGHT)) + (hold * LONG_TERM_WEIGHT);
+			// Recover quickly when the database speeds up again
+			if (shortTermHold < longTermHold) {
+				longTermHold = shortTermHold;
+			}
+			gradient = Math.max(MIN_GRADIENT, Math.min(1.0, (TOLERANCE * longTermHold) / shortTermHold));
+		}
+
+		if (gradient < 1.0) {
+			estimate = (estimate * (1 - SHRINK_SMOOTHING)) + (estimate * gradient * SHRINK_SMOOTHING);
+		} else if (demand) {
+			estimate += Math.sqrt(estimate);
+		}
+		estimate = Math.max(min, Math.min(max, estimate));
+		limit = (int) estimate;
+		return INTERVAL_MILLIS;
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptiveLimit (limit=" + limit + " max=" + max + " hold=" + (Double.isNaN(shortTermHold) ? "?" : TimeUnit.NANOSECONDS.toMicros((long) shortTermHold) + "us") + ")";
+	}
+}
@@ -0,0 +1,150 @@
+package us.pixelmemory.pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hold and wait time by the caller frame that checked out, for the top call sites only.
+ * When full, a new call site replaces the one with the least time and inherits that time as
+ * its error bound (Space-Saving), so a heavy site is never pushed out by many light ones.
+ * Nothing here locks.  A new site that finds the profile full waits in a candidate slot, counting,
+ * until the servicing thread runs promote() and makes room for it.
+ * Only 1 in sampling checkouts looks up its frame.  Those count sampling times over so totals stay estimates of the whole.
+ */
+final class CallSiteProfile {
+	private static final int MAX_CANDIDATES = 64;
+	private final int capacity;
+	private final int sampling;
+	private final ConcurrentHashMap<StackTraceElement, Site> sites = new ConcurrentHashMap<>();
+	private final AtomicReferenceArray<Site> candidates; // Indexed by frame hash.  A newcomer replaces a different site.
+
+	CallSiteProfile(final int capacity, final int sampling) {
+		this.capacity = capacity;
+		this.sampling = Math.max(1, sampling);
+		int n = 1;
+		while (n < Math.min(capacity, MAX_CANDIDATES)) {
+			n <<= 1;
+		}
+		candidates = new AtomicReferenceArray<>(n);
+	}
+
+	/**
+	 * @return true if this checkout should look up its call site
+	 */
+	boolean sample() {
+		return (sampling == 1) || (ThreadLocalRandom.current().nextInt(sampling) == 0);
+	}
+
+	/**
+	 * @return The site's counters, or null if the frame is unknown.  Request promote() if it's not ranked.
+	 */
+	Site site(final StackTraceElement frame) {
+		if (frame == null) {
+			return null;
+		}
+		final Site known = sites.get(frame);
+		if (known != null) {
+			return known;
+		}
+		if (sites.size() < capacity) {
+			// Racing threads may overfill it a little.  promote() trims.
+			final Site s = new Site(frame, true, sampling);
+			final Site raced = sites.putIfAbsent(frame, s);
+			return (raced != null) ? raced : s;
+		}
+		final int i = frame.hashCode() & (candidates.length() - 1);
+		final Site c = candidates.get(i);
+		if ((c != null) && c.frame.equals(frame)) {
+			return c;
+		}
+		final Site s = new Site(frame, false, sampling);
+		candidates.set(i, s);
+		return s;
+	}
+
+	/**
+	 * Rank waiting candidates, each replacing the least site, and trim any overfill
+	 */
+	//For service thread
+	void promote() {
+		for (int i = 0; i < candidates.length(); ++i) {
+			final Site c = candidates.getAndSet(i, null);
+			if ((c == null) || sites.containsKey(c.frame)) {
+				continue;
+			}
+			if (sites.size() >= capacity) {
+				final Site least = least();
+				if ((least != null) && sites.remove(least.frame, least)) {
+					c.error = least.weight();
+				}
+			}
+			c.ranked = true;
+			sites.put(c.frame, c);
+		}
+		Site least;
+		while ((sites.size() > capacity) && ((least = least()) != null)) {
+			sites.remove(least.frame, least);
+		}
+	}
+
+	private Site least() {
+		Site least = null;
+		long leastWeight = Long.MAX_VALUE;
+		for (final Site s : sites.values()) {
+			final long w = s.weight();
+			if (w < leastWeight) {
+				least = s;
+				leastWeight = w;
+			}
+		}
+		return least;
+	}
+
+	/**
+	 * @return Heaviest first
+	 */
+	List<CallSiteStats> snapshot() {
+		final List<CallSiteStats> result = new ArrayList<>(sites.size());
+		for (final Site s : sites.values()) {
+			result.add(new CallSiteStats(s.frame, s.checkOuts.sum(), s.holdNanos.sum(), s.waitNanos.sum(), s.error));
+		}
+		Collections.sort(result, (a, b) -> Long.compare(b.getTotalNanos() + b.getErrorNanos(), a.getTotalNanos() + a.getErrorNanos()));
+		return result;
+	}
+
+	static final class Site {
+		final StackTraceElement frame;
+		volatile long error; // Set once by promote() before it's published in sites
+		volatile boolean ranked; // In sites rather than waiting as a candidate
+		private final int scale; // Checkouts each sampled one stands for
+		final LongAdder checkOuts = new LongAdder();
+		final LongAdder holdNanos = new LongAdder();
+		final LongAdder waitNanos = new LongAdder();
+
+		Site(final StackTraceElement frame, final boolean ranked, final int scale) {
+			this.frame = frame;
+			this.ranked = ranked;
+			this.scale = scale;
+		}
+
+		void checkedOut(final long waited) {
+			checkOuts.add(scale);
+			if (waited > 0) {
+				waitNanos.add(waited * scale);
+			}
+		}
+
+		void held(final long held) {
+			holdNanos.add(held * scale);
+		}
+
+		long weight() {
+			return holdNanos.sum() + waitNanos.sum() + error;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package us.pixelmemory.pool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of the time one acquisition call site has spent waiting for and holding Pool elements.
+ * Time of elements still checked out isn't counted yet.
+ * With leakTraceSampling above 1 the counts and times are estimates, scaled up from the sampled checkouts.
+ */
+public final class CallSiteStats {
+	private final StackTraceElement site;
+	private final long checkOuts;
+	private final long holdNanos;
+	private final long waitNanos;
+	private final long errorNanos;
+
+	CallSiteStats(final StackTraceElement site, final long checkOuts, final long holdNanos, final long waitNanos, final long errorNanos) {
+		this.site = site;
+		this.checkOuts = checkOuts;
+		this.holdNanos = holdNanos;
+		this.waitNanos = waitNanos;
+		this.errorNanos = errorNanos;
+	}
+
+	/**
+	 * @return The first frame outside the Pool
+	 */
+	public StackTraceElement getSite() {
+		return site;
+	}
+
+	public long getCheckOuts() {
+		return checkOuts;
+	}
+
+	public long getHoldNanos() {
+		return holdNanos;
+	}
+
+	public long getWaitNanos() {
+		return waitNanos;
+	}
+
+	public long getTotalNanos() {
+		return holdNanos + waitNanos;
+	}
+
+	public long getMeanHoldNanos() {
+		return (checkOuts > 0) ? holdNanos / checkOuts : 0;
+	}
+
+	/**
+	 * @return Time this site may have had before it entered the table and its counts started
+	 */
+	public long getErrorNanos() {
+		return errorNanos;
+	}
+
+	@Override
+	public String toString() {
+		return site + " (checkOuts=" + checkOuts + " hold=" + TimeUnit.NANOSECONDS.toMillis(holdNanos) + "ms wait=" + TimeUnit.NANOSECONDS.toMillis(waitNanos) + "ms meanHold="
+				+ TimeUnit.NANOSECONDS.toMicros(getMeanHoldNanos()) + "us" + ((errorNanos > 0) ? " error<=" + TimeUnit.NANOSECONDS.toMillis(errorNanos) + "ms" : "") + ")";
+	}
+}
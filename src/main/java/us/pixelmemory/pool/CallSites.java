@@ -0,0 +1,179 @@
+package us.pixelmemory.pool;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Captures where the caller of the Pool is, skipping the Pool's own frames.
+ * StackWalker (Java 9+) is used through method handles when available so that the walk stops after
+ * the frames needed.  Java 8 falls back to a full Throwable stack trace, so only leak traces use it there.
+ * Results are interned so that a call site checking out over and over shares one object.
+ * Each Pool has its own because wrappers around it name their classes to skip in PoolSettings.skipFrames.
+ */
+final class CallSites {
+	private static final int MAX_INTERNED = 4096;
+	private static final String[] POOL_CLASSES = { Pool.class.getName(), ObjectTracker.class.getName(), Lease.class.getName(), Reservation.class.getName(),
+			CallSites.class.getName() };
+	private final String[] skip;
+	private final int maxInterned;
+	private final ConcurrentHashMap<FrameKey, ObjectTracker.Trace> traces = new ConcurrentHashMap<>();
+	private final Function<Stream<Object>, StackTraceElement[]> first = s -> walked(s.iterator(), 1); // Made once so caller() doesn't allocate it
+
+	private static final Object WALKER;
+	private static final MethodHandle WALK;
+	private static final MethodHandle CLASS_NAME;
+	private static final MethodHandle TO_ELEMENT;
+
+	static {
+		Object walker = null;
+		MethodHandle walk = null;
+		MethodHandle className = null;
+		MethodHandle toElement = null;
+		try {
+			final Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+			final Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+			final MethodHandles.Lookup lookup = MethodHandles.lookup(); // walk() is caller sensitive so a public lookup is refused
+			walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+					.asType(MethodType.methodType(Object.class, Object.class, Function.class));
+			className = lookup.findVirtual(frameClass, "getClassName", MethodType.methodType(String.class))
+					.asType(MethodType.methodType(String.class, Object.class));
+			toElement = lookup.findVirtual(frameClass, "toStackTraceElement", MethodType.methodType(StackTraceElement.class))
+					.asType(MethodType.methodType(StackTraceElement.class, Object.class));
+			walker = walkerClass.getMethod("getInstance").invoke(null);
+		} catch (final ReflectiveOperationException | RuntimeException err) {
+			walker = null; // Java 8
+		}
+		WALKER = walker;
+		WALK = walk;
+		CLASS_NAME = className;
+		TO_ELEMENT = toElement;
+	}
+
+	/**
+	 * @param skipFrames Class names, or package prefixes ending in '.', of callers' wrappers around the Pool
+	 */
+	CallSites(final List<String> skipFrames) {
+		this(skipFrames, MAX_INTERNED);
+	}
+
+	CallSites(final List<String> skipFrames, final int maxInterned) {
+		this.maxInterned = maxInterned;
+		final ArrayList<String> all = new ArrayList<>(Arrays.asList(POOL_CLASSES));
+		if (skipFrames != null) {
+			all.addAll(skipFrames);
+		}
+		skip = all.toArray(new String[all.size()]);
+	}
+
+	static boolean hasStackWalker() {
+		return WALKER != null;
+	}
+
+	/**
+	 * @return Trace of up to depth frames of the Pool's caller, shared with earlier identical traces
+	 *         since the intern table last filled
+	 */
+	ObjectTracker.Trace trace(final int depth) {
+		final StackTraceElement[] frames = frames(Math.max(1, depth));
+		final FrameKey key = new FrameKey(frames);
+		final ObjectTracker.Trace known = traces.get(key);
+		if (known != null) {
+			return known;
+		}
+		final ObjectTracker.Trace trace = new ObjectTracker.Trace(frames);
+		if (traces.size() >= maxInterned) {
+			// Start over rather than stop interning so that sites seen after it fills still share traces.
+			// Elements already checked out keep theirs.  It's cleared once per maxInterned new sites at most.
+			traces.clear();
+		}
+		final ObjectTracker.Trace raced = traces.putIfAbsent(key, trace);
+		return (raced != null) ? raced : trace;
+	}
+
+	/**
+	 * Only call when hasStackWalker().  There's no cheap way to find one frame without it.
+	 * @return First frame outside the Pool, or null if there is none
+	 */
+	StackTraceElement caller() {
+		final StackTraceElement[] frames = walk(first);
+		return (frames.length > 0) ? frames[0] : null;
+	}
+
+	StackTraceElement[] frames(final int depth) {
+		if (WALKER != null) {
+			return walk(s -> walked(s.iterator(), depth));
+		}
+		final StackTraceElement[] all = new Throwable().getStackTrace();
+		int first = 0;
+		while ((first < all.length) && isPoolClass(all[first].getClassName())) {
+			first++;
+		}
+		return Arrays.copyOfRange(all, first, (int) Math.min(all.length, (long) first + depth));
+	}
+
+	private static StackTraceElement[] walk(final Function<Stream<Object>, StackTraceElement[]> collect) {
+		try {
+			final Object frames = (Object) WALK.invokeExact(WALKER, (Function<?, ?>) collect);
+			return (StackTraceElement[]) frames;
+		} catch (final RuntimeException | Error err) {
+			throw err;
+		} catch (final Throwable err) {
+			throw new IllegalStateException(err);
+		}
+	}
+
+	private StackTraceElement[] walked(final Iterator<Object> frames, final int depth) {
+		final ArrayList<StackTraceElement> out = new ArrayList<>(Math.min(depth, 16));
+		try {
+			while (frames.hasNext() && (out.size() < depth)) {
+				final Object f = frames.next();
+				if (out.isEmpty() && isPoolClass((String) CLASS_NAME.invokeExact(f))) {
+					continue;
+				}
+				out.add((StackTraceElement) TO_ELEMENT.invokeExact(f));
+			}
+		} catch (final RuntimeException | Error err) {
+			throw err;
+		} catch (final Throwable err) {
+			throw new IllegalStateException(err);
+		}
+		return out.toArray(new StackTraceElement[out.size()]);
+	}
+
+	boolean isPoolClass(final String className) {
+		for (final String c : skip) {
+			if (className.startsWith(c) && (c.endsWith(".") || (className.length() == c.length()) || (className.charAt(c.length()) == '$'))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static final class FrameKey {
+		private final StackTraceElement[] frames;
+		private final int hash;
+
+		FrameKey(final StackTraceElement[] frames) {
+			this.frames = frames;
+			hash = Arrays.hashCode(frames);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return (obj instanceof FrameKey) && (((FrameKey) obj).hash == hash) && Arrays.equals(((FrameKey) obj).frames, frames);
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package us.pixelmemory.pool;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of System.nanoTime() deadlines for one thread.
+ * Each Entry remembers its position so rescheduling or removing is O(log n) without searching,
+ * and scheduling an Entry that's already queued moves it instead of adding it twice.
+ * Nothing is allocated except when the array grows.
+ *
+ * @param <E> Owner of the entries
+ */
+final class DeadlineHeap<E> {
+	private Entry<E>[] heap;
+	private int size = 0;
+
+	/**
+	 * A slot in the heap that belongs to one owner for its lifetime
+	 */
+	static final class Entry<E> {
+		final E owner;
+		int index = -1;
+		long deadline;
+
+		Entry(final E owner) {
+			this.owner = owner;
+		}
+
+		boolean isScheduled() {
+			return index >= 0;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	DeadlineHeap() {
+		heap = (Entry<E>[]) new Entry<?>[16];
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Add the entry, or move it if it's already in the heap
+	 */
+	void schedule(final Entry<E> e, final long deadline) {
+		e.deadline = deadline;
+		if (e.index < 0) {
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, size * 2);
+			}
+			e.index = size++;
+			heap[e.index] = e;
+			siftUp(e.index);
+		} else if (!siftUp(e.index)) {
+			siftDown(e.index);
+		}
+	}
+
+	/**
+	 * Schedule the entry unless it's already due sooner
+	 */
+	void scheduleBy(final Entry<E> e, final long deadline) {
+		if ((e.index < 0) || ((deadline - e.deadline) < 0)) {
+			schedule(e, deadline);
+		}
+	}
+
+	void remove(final Entry<E> e) {
+		final int i = e.index;
+		if (i < 0) {
+			return;
+		}
+		e.index = -1;
+		final Entry<E> last = heap[--size];
+		heap[size] = null;
+		if (i < size) {
+			heap[i] = last;
+			last.index = i;
+			if (!siftUp(i)) {
+				siftDown(i);
+			}
+		}
+	}
+
+	/**
+	 * @return The earliest deadline.  Only valid when not empty.
+	 */
+	long nextDeadline() {
+		return heap[0].deadline;
+	}
+
+	/**
+	 * Remove and return the earliest entry if it's due
+	 * @return Owner, or null if nothing is due
+	 */
+	E pollDue(final long now) {
+		if ((size == 0) || ((heap[0].deadline - now) > 0)) {
+			return null;
+		}
+		final Entry<E> top = heap[0];
+		remove(top);
+		return top.owner;
+	}
+
+	/**
+	 * @return true if the entry moved
+	 */
+	private boolean siftUp(int i) {
+		final Entry<E> e = heap[i];
+		final int start = i;
+		while (i > 0) {
+			final int parent = (i - 1) >>> 1;
+			final Entry<E> p = heap[parent];
+			if ((e.deadline - p.deadline) >= 0) {
+				break;
+			}
+			heap[i] = p;
+			p.index = i;
+			i = parent;
+		}
+		heap[i] = e;
+		e.index = i;
+		return i != start;
+	}
+
+	private void siftDown(int i) {
+		final Entry<E> e = heap[i];
+		final int half = size >>> 1;
+		while (i < half) {
+			int child = (i << 1) + 1;
+			Entry<E> c = heap[child];
+			final int right = child + 1;
+			if ((right < size) && ((heap[right].deadline - c.deadline) < 0)) {
+				child = right;
+				c = heap[child];
+			}
+			if ((e.deadline - c.deadline) <= 0) {
+				break;
+			}
+			heap[i] = c;
+			c.index = i;
+			i = child;
+		}
+		heap[i] = e;
+		e.index = i;
+	}
+}
@@ -0,0 +1,107 @@
+package us.pixelmemory.pool;
+
+import org.slf4j.Logger;
+
+/**
+ * Logs and ignores exceptions from a PoolListener so that a broken metrics hook can't lose
+ * an element, leak a connection, or kill a servicing thread.
+ */
+final class GuardedListener implements PoolListener {
+	private final PoolListener listener;
+	private final Logger log;
+
+	GuardedListener(final PoolListener listener, final Logger log) {
+		this.listener = listener;
+		this.log = log;
+	}
+
+	@Override
+	public void onAcquire(final Pool<?, ?> pool, final long waitNanos) {
+		try {
+			listener.onAcquire(pool, waitNanos);
+		} catch (final RuntimeException err) {
+			log.warn("Listener failed", err);
+		}
+	}
+
+	@Override
+	public void onHandOff(final Pool<?, ?> pool, final long waitNanos) {
+		try {
+			listener.onHandOff(pool, waitNanos);
+		} catch (final RuntimeException err) {
+			log.warn("Listener failed", err);
+		}
+	}
+
+	@Override
+	public void onTimeout(final Pool<?, ?> pool, final long waitNanos) {
+		try {
+			listener.onTimeout(pool, waitNanos);
+		} catch (final RuntimeException err) {
+			log.warn("Listener failed", err);
+		}
+	}
+
+	@Override
+	public void onCreate(final Pool<?, ?> pool, final long createNanos) {
+		try {
+			listener.onCreate(pool, createNanos);
+		} catch (final RuntimeException err) {
+			log.warn("Listener failed", err);
+		}
+	}
+
+	@Override
+	public void onCreateFailure(final Pool<?, ?> pool, final long createNanos, final Exception cause) {
+		try {
+			listener.onCreateFailure(pool, createNanos, cause);
+		} catch (final RuntimeException err) {
+			log.warn("Listener failed", err);
+		}
+	}
+
+	@Override
+	public void onValidate(final Pool<?, ?> pool, final long validateNanos, final boolean valid) {
+		try {
+			listener.onValidate(pool, validateNanos, valid);
+		} catch (final RuntimeException err) {
+			log.warn("Listener failed", err);
+		}
+	}
+
+	@Override
+	public void onEvict(final Pool<?, ?> pool, final long idleMillis) {
+		try {
+			listener.onEvict(pool, idleMillis);
+		} catch (final RuntimeException err) {
+			log.warn("Listener failed", err);
+		}
+	}
+
+	@Override
+	public void onLongUse(final Pool<?, ?> pool, final long useMillis) {
+		try {
+			listener.onLongUse(pool, useMillis);
+		} catch (final RuntimeException err) {
+			log.warn("Listener failed", err);
+		}
+	}
+
+	@Override
+	public void onLeak(final Pool<?, ?> pool, final Taker taker) {
+		try {
+			listener.onLeak(pool, taker);
+		} catch (final RuntimeException err) {
+			log.warn("Listener failed", err);
+		}
+	}
+
+	@Override
+	public void onSuspectedLeak(final Pool<?, ?> pool, final Taker taker, final long heldMillis) {
+		try {
+			listener.onSuspectedLeak(pool, taker, heldMillis);
+		} catch (final RuntimeException err) {
+			log.warn("Listener failed", err);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package us.pixelmemory.pool;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory, lock-free histogram of nanosecond durations.
+ * Buckets are log-linear: each power of two is split into 8 linear steps so any value is within 12.5%.
+ * Counts are striped by thread so that recording is one uncontended atomic increment.
+ */
+final class LatencyHistogram {
+	static final int SUB_BITS = 3;
+	static final int SUB_COUNT = 1 << SUB_BITS;
+	static final int BUCKETS = ((63 - SUB_BITS) * SUB_COUNT) + SUB_COUNT; // Positive longs have exponents up to 62
+	private static final int STRIPES;
+
+	static {
+		int n = 1;
+		while ((n < Runtime.getRuntime().availableProcessors()) && (n < 16)) {
+			n <<= 1;
+		}
+		STRIPES = n;
+	}
+
+	private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+
+	static int bucket(final long nanos) {
+		if (nanos < SUB_COUNT) {
+			return (nanos > 0) ? (int) nanos : 0;
+		}
+		final int exp = 63 - Long.numberOfLeadingZeros(nanos);
+		return ((exp - SUB_BITS + 1) << SUB_BITS) + (int) ((nanos >>> (exp - SUB_BITS)) & (SUB_COUNT - 1));
+	}
+
+	/**
+	 * @return Smallest value in the bucket
+	 */
+	static long lowest(final int bucket) {
+		if (bucket < SUB_COUNT) {
+			return bucket;
+		}
+		final int exp = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+		return (1L << exp) + ((long) (bucket & (SUB_COUNT - 1)) << (exp - SUB_BITS));
+	}
+
+	/**
+	 * @return Largest value in the bucket
+	 */
+	static long highest(final int bucket) {
+		return (bucket < (BUCKETS - 1)) ? lowest(bucket + 1) - 1 : Long.MAX_VALUE;
+	}
+
+	void record(final long nanos) {
+		counts.getAndIncrement(stripeBase() + bucket(nanos));
+	}
+
+	/**
+	 * Record a zero without the cost of finding its bucket
+	 */
+	void recordZero() {
+		counts.getAndIncrement(stripeBase());
+	}
+
+	LatencySnapshot snapshot() {
+		final long[] merged = new long[BUCKETS];
+		for (int i = 0; i < counts.length(); ++i) {
+			merged[i % BUCKETS] += counts.get(i);
+		}
+		return new LatencySnapshot(merged);
+	}
+
+	private static int stripeBase() {
+		if (STRIPES == 1) {
+			return 0;
+		}
+		final long id = Thread.currentThread().getId();
+		final int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return ((h ^ (h >>> 16)) & (STRIPES - 1)) * BUCKETS;
+	}
+}
@@ -0,0 +1,97 @@
+package us.pixelmemory.pool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy of a latency histogram's counts.  Values are nanoseconds and accurate to 12.5%.
+ * Snapshots count from when the Pool was created.  Use minus() for an interval.
+ */
+public final class LatencySnapshot {
+	private final long[] counts;
+	private final long total;
+
+	LatencySnapshot(final long[] counts) {
+		this.counts = counts;
+		long t = 0;
+		for (final long c : counts) {
+			t += c;
+		}
+		total = t;
+	}
+
+	/**
+	 * @return Number of recorded values
+	 */
+	public long getCount() {
+		return total;
+	}
+
+	/**
+	 * @param percentile 0 to 100
+	 * @return Upper bound of the bucket holding the percentile, or 0 if empty
+	 */
+	public long getPercentileNanos(final double percentile) {
+		if (total == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil((percentile / 100.0) * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length; ++i) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return LatencyHistogram.highest(i);
+			}
+		}
+		return LatencyHistogram.highest(counts.length - 1);
+	}
+
+	/**
+	 * @return Mean using the middle of each bucket
+	 */
+	public long getMeanNanos() {
+		if (total == 0) {
+			return 0;
+		}
+		double sum = 0;
+		for (int i = 0; i < counts.length; ++i) {
+			if (counts[i] != 0) {
+				final long low = LatencyHistogram.lowest(i);
+				sum += counts[i] * (low + ((LatencyHistogram.highest(i) - low) / 2.0));
+			}
+		}
+		return (long) (sum / total);
+	}
+
+	/**
+	 * @return Upper bound of the highest bucket with a value, or 0 if empty
+	 */
+	public long getMaxNanos() {
+		for (int i = counts.length - 1; i >= 0; --i) {
+			if (counts[i] != 0) {
+				return LatencyHistogram.highest(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return Values recorded since the earlier snapshot of the same histogram
+	 */
+	public LatencySnapshot minus(final LatencySnapshot earlier) {
+		final long[] diff = new long[counts.length];
+		for (int i = 0; i < counts.length; ++i) {
+			diff[i] = counts[i] - earlier.counts[i];
+		}
+		return new LatencySnapshot(diff);
+	}
+
+	@Override
+	public String toString() {
+		return "LatencySnapshot (count=" + total + " mean=" + micros(getMeanNanos()) + " p50=" + micros(getPercentileNanos(50)) + " p99=" + micros(getPercentileNanos(99))
+				+ " p99.9=" + micros(getPercentileNanos(99.9)) + " max=" + micros(getMaxNanos()) + ")";
+	}
+
+	private static String micros(final long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+	}
+}
@@ -0,0 +1,83 @@
+package us.pixelmemory.pool;
+
+/**
+ * One checkout of a Pool element.  The Lease keeps the element's tracking slot so closing it
+ * needs no lookup, and its generation so that a second close is caught right away.
+ *
+ * @param <T>
+ */
+public final class Lease<T> implements AutoCloseable {
+	private final Pool<T, ?> pool;
+	private final T element;
+	private final ObjectTracker.TraceRef<T> traceRef;
+	private final int generation;
+
+	Lease(final Pool<T, ?> pool, final T element, final ObjectTracker.TraceRef<T> traceRef) {
+		this.pool = pool;
+		this.element = element;
+		this.traceRef = traceRef;
+		generation = traceRef.getGeneration();
+	}
+
+	/**
+	 * @throws IllegalStateException if the Lease was closed
+	 */
+	public T get() {
+		if (!isOpen()) {
+			throw new IllegalStateException("Lease closed");
+		}
+		return element;
+	}
+
+	public Pool<T, ?> getPool() {
+		return pool;
+	}
+
+	/**
+	 * @return System.currentTimeMillis() when checked out
+	 */
+	public long getCheckOutTime() {
+		return traceRef.getTime();
+	}
+
+	public boolean isOpen() {
+		return traceRef.getGeneration() == generation;
+	}
+
+	/**
+	 * Return the element to the Pool
+	 * @throws IllegalStateException if the Lease was already closed
+	 */
+	@Override
+	public void close() {
+		close(0);
+	}
+
+	/**
+	 * Return an element that the caller has seen working
+	 * @param lastSuccessMillis System.currentTimeMillis() of the last successful use, or 0 if unknown
+	 * @throws IllegalStateException if the Lease was already closed
+	 */
+	public void close(final long lastSuccessMillis) {
+		if (!traceRef.release(generation)) {
+			throw new IllegalStateException("Lease already closed: " + element);
+		}
+		pool.takeBack(traceRef, element, lastSuccessMillis);
+	}
+
+	/**
+	 * Close the element instead of returning it to the Pool
+	 * @throws IllegalStateException if the Lease was already closed
+	 */
+	public void abandon() {
+		if (!traceRef.release(generation)) {
+			throw new IllegalStateException("Lease already closed: " + element);
+		}
+		pool.abandon(element);
+	}
+
+	@Override
+	public String toString() {
+		return "Lease [" + pool.getName() + "] " + element + (isOpen() ? "" : " (closed)");
+	}
+}
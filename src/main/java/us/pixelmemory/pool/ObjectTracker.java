@@ -9,73 +9,59 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceArray;
-
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * Identity table of checked-out state, one TraceRef per open element.
+ * Open addressing with linear probing in a power of two table.  Slots never go back to empty so
+ * probe chains stay intact, and lookups and removals never lock or allocate.
+ * When the table fills with live or deleted slots, it's copied to a new table sized for the live
+ * count while lookups and removals continue through both.  Adds help with the copy in blocks of
+ * slots, and wait only while other threads finish blocks that they have already claimed.
+ */
 class ObjectTracker<T> {
-	final AtomicReferenceArray<TraceRef<T>[]> references;
+	private static final int MIN_CAPACITY = 16;
+	private static final int MAX_CAPACITY = 1 << 30;
+	private static final int TRANSFER_BLOCK = 64; // Slots claimed at a time by a thread helping with a copy
+	@SuppressWarnings("rawtypes")
+	private static final TraceRef DELETED = new TraceRef<>(0, null, null);
+	@SuppressWarnings("rawtypes")
+	private static final TraceRef MOVED = new TraceRef<>(0, null, null);
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<Table, Table> NEXT = AtomicReferenceFieldUpdater.newUpdater(Table.class, Table.class, "next");
+
 	final ReferenceQueue<T> queue = new ReferenceQueue<>();
+	private final AtomicInteger size = new AtomicInteger(0);
+	private volatile Table<T> table;
 
-	public ObjectTracker(final int buckets) {
-		references = new AtomicReferenceArray<>(buckets);
+	/**
+	 * @param expected Expected number of elements; the table grows as needed
+	 */
+	public ObjectTracker(final int expected) {
+		table = new Table<>(capacityFor(expected));
 	}
 
-	@SuppressWarnings("unchecked")
 	public void add(final T e) {
 		final int hash = System.identityHashCode(e);
-		final int idx = (hash & Integer.MAX_VALUE) % references.length();
 		final TraceRef<T> ref = new TraceRef<>(hash, e, queue);
 
-		TraceRef<T>[] old;
-		TraceRef<T>[] update = null;
-		do {
-			old = references.get(idx);
-			final int oldLen = (old != null) ? old.length : 0;
-			if ((update == null) || (update.length != (oldLen + 1))) {
-				update = new TraceRef[oldLen + 1];
-			}
-			update[0] = ref;
-			for (int i = 0; i < oldLen; ++i) {
-				final TraceRef<T> t = old[i];
-				if ((t.hash == hash) && (e == t.get())) {
-					throw new IllegalArgumentException("Duplicate: " + e);
-				}
-				update[i + 1] = t;
+		while (true) {
+			final Table<T> t = settled();
+			if (t.used.get() >= t.threshold) {
+				resize(t);
+			} else if (t.insert(ref, e)) {
+				break;
 			}
-		} while (!references.compareAndSet(idx, old, update));
+		}
+		size.incrementAndGet();
 	}
 
-	@SuppressWarnings("unchecked")
 	public void remove(final T e) {
-		final int hash = System.identityHashCode(e);
-		final int idx = (hash & Integer.MAX_VALUE) % references.length();
-
-		TraceRef<T>[] old;
-		TraceRef<T>[] update = null;
-		int newLen;
-		do {
-			old = references.get(idx);
-			if (old == null) {
-				throw new IllegalArgumentException("Not tracked: " + e);
-			}
-			newLen = old.length - 1;
-
-			if ((old.length > 1) && ((update == null) || (update.length != newLen))) {
-				update = new TraceRef[newLen];
-			}
-
-			int outPos = 0;
-			for (int i = 0; i < old.length; ++i) {
-				final TraceRef<T> t = old[i];
-				if ((outPos != i) || (t.hash != hash) || (e != t.get())) {
-					if ((update == null) || (outPos >= newLen)) {
-						throw new IllegalArgumentException("Not tracked: " + e);
-					}
-					update[outPos++] = t;
-				} else {
-					t.clear();
-				}
-			}
-		} while (!references.compareAndSet(idx, old, (newLen > 0) ? update : null));
+		delete(System.identityHashCode(e), e, null).clear();
 	}
 
 	public TraceRef<T> getTraceRef(final T e) {
@@ -83,21 +69,11 @@ class ObjectTracker<T> {
 	}
 
 	public int count() {
-		int count = 0;
-		for (int i = 0; i < references.length(); ++i) {
-			final TraceRef<T>[] traces = references.get(i);
-			count += (traces != null) ? traces.length : 0;
-		}
-		return count;
+		return size.get();
 	}
 
 	public boolean isEmtpy() {
-		for (int i = 0; i < references.length(); ++i) {
-			if (references.get(i) != null) {
-				return false;
-			}
-		}
-		return true;
+		return size.get() == 0;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -106,7 +82,7 @@ class ObjectTracker<T> {
 		if (ref != null) {
 			final ArrayList<TraceRef<T>> result = new ArrayList<>();
 			do {
-				remove(ref);
+				delete(ref.hash, null, ref);
 				result.add(ref);
 			} while ((ref = (TraceRef<T>) queue.poll()) != null);
 			return result;
@@ -119,15 +95,14 @@ class ObjectTracker<T> {
 	 */
 	public List<Taker> traceAll () {
 		final List<Taker> takers= new ArrayList<>();
-		for (int i= 0; i < references.length(); ++i) {
-			final TraceRef<T>[] traces = references.get(i);
-			if (traces != null) {
-				for (TraceRef<T> tr : traces) {
-					Taker taker= new TakerImpl(tr);
-					//Filter out checked-in
-					if (taker.getThread() != null) {
-						takers.add(taker);
-					}
+		final Table<T> t = settled();
+		for (int i= 0; i <= t.mask; ++i) {
+			final TraceRef<T> tr = t.slots.get(i);
+			if (isLive(tr)) {
+				Taker taker= new TakerImpl(tr);
+				//Filter out checked-in
+				if (taker.getThread() != null) {
+					takers.add(taker);
 				}
 			}
 		}
@@ -135,79 +110,269 @@ class ObjectTracker<T> {
 		return takers;
 	}
 
+	/**
+	 * Visit a bounded part of the table so a long walk can be spread over several calls.
+	 * Entries added or moved during a walk may be missed until the next one.
+	 * @param cursor 0 to start at the beginning
+	 * @return Cursor for the next call, or 0 if the end was reached
+	 */
+	int scan(final int cursor, final int max, final Consumer<TraceRef<T>> visitor) {
+		final Table<T> t = table;
+		int i = cursor;
+		for (final int end = (int) Math.min(t.mask + 1L, (long) cursor + max); i < end; ++i) {
+			final TraceRef<T> tr = t.slots.get(i);
+			if (isLive(tr)) {
+				visitor.accept(tr);
+			}
+		}
+		return (i > t.mask) ? 0 : i;
+	}
+
 	/**
 	 * Manual Testing
-	 * @return Chain Length : Count
+	 * @return Probe length : Count
 	 */
 	public TreeMap<Integer, Integer> buildCollisionHistogram() {
 		final TreeMap<Integer, Integer> map = new TreeMap<>();
-		for (int i = 0; i < references.length(); ++i) {
-			final TraceRef<T>[] traces = references.get(i);
-			final Integer n = Integer.valueOf((traces != null) ? traces.length : 0);
-			final Integer old = map.get(n);
-			if (old == null) {
-				map.put(n, Integer.valueOf(1));
-			} else {
-				map.put(n, Integer.valueOf(old.intValue() + 1));
+		final Table<T> t = settled();
+		for (int i = 0; i <= t.mask; ++i) {
+			final TraceRef<T> tr = t.slots.get(i);
+			if (isLive(tr)) {
+				final Integer n = Integer.valueOf(((i - tr.hash) & t.mask) + 1);
+				final Integer old = map.get(n);
+				if (old == null) {
+					map.put(n, Integer.valueOf(1));
+				} else {
+					map.put(n, Integer.valueOf(old.intValue() + 1));
+				}
 			}
 		}
 
 		return map;
 	}
 
+	/**
+	 * @return Slots in the current table
+	 */
+	int capacity() {
+		return settled().mask + 1;
+	}
+
 	private TraceRef<T> find(final T e) {
 		final int hash = System.identityHashCode(e);
-		final int idx = (hash & Integer.MAX_VALUE) % references.length();
+		for (Table<T> t = table; t != null; t = t.next) {
+			final TraceRef<T> ref = t.find(hash, e);
+			if (ref != null) {
+				return ref;
+			}
+		}
+		throw new IllegalArgumentException("Not tracked: " + e);
+	}
 
-		final TraceRef<T>[] traces = references.get(idx);
-		if (traces == null) {
-			throw new IllegalArgumentException("Not tracked: " + e);
+	private TraceRef<T> delete(final int hash, final T e, final TraceRef<T> ref) {
+		for (Table<T> t = table; t != null; t = t.next) {
+			final TraceRef<T> removed = t.delete(hash, e, ref);
+			if (removed != null) {
+				size.decrementAndGet();
+				return removed;
+			}
 		}
+		throw new IllegalArgumentException("Not tracked: " + ((e != null) ? e : ref));
+	}
 
-		for (final TraceRef<T> t : traces) {
-			if ((t.hash == hash) && (e == t.get())) {
-				return t;
+	/**
+	 * @return The current table, after helping to finish any copy in progress
+	 */
+	private Table<T> settled() {
+		Table<T> t;
+		while ((t = table).next != null) {
+			if (!transfer(t, t.next)) {
+				Thread.yield(); // Only blocks claimed by other threads remain
 			}
 		}
-		throw new IllegalArgumentException("Not tracked: " + e);
+		return t;
 	}
 
-	@SuppressWarnings("unchecked")
-	private void remove(final TraceRef<T> e) {
-		final int hash = e.hash;
-		final int idx = (hash & Integer.MAX_VALUE) % references.length();
-
-		TraceRef<T>[] old;
-		TraceRef<T>[] update = null;
-		int newLen;
-		do {
-			old = references.get(idx);
-			if (old == null) {
-				throw new IllegalArgumentException("Not tracked: " + e);
+	private void resize(final Table<T> old) {
+		// Headroom for adds that were already inserting when the copy started
+		final Table<T> replacement = new Table<>(capacityFor(size.get() + MIN_CAPACITY));
+		if (NEXT.compareAndSet(old, null, replacement)) {
+			transfer(old, replacement);
+		}
+	}
+
+	/**
+	 * Copy slots to the replacement table.  Any number of threads may help, each claiming its own
+	 * blocks of slots.  Whoever finishes the last block installs the replacement.
+	 * @return false if there was nothing left to claim
+	 */
+	private boolean transfer(final Table<T> old, final Table<T> dest) {
+		final int capacity = old.mask + 1;
+		boolean helped = false;
+		int start;
+		while ((start = old.transferIndex.get()) < capacity) {
+			final int end = Math.min(capacity, start + TRANSFER_BLOCK);
+			if (old.transferIndex.compareAndSet(start, end)) {
+				helped = true;
+				for (int i = start; i < end; ++i) {
+					old.moveTo(i, dest);
+				}
+				if (old.transferred.addAndGet(end - start) == capacity) {
+					table = dest;
+				}
+			}
+		}
+		return helped;
+	}
+
+	/**
+	 * Start a copy without moving anything, as a thread that stalled right after starting it would.
+	 * For testing.
+	 */
+	void stallResize() {
+		final Table<T> t = settled();
+		NEXT.compareAndSet(t, null, new Table<>(capacityFor(size.get() + MIN_CAPACITY)));
+	}
+
+	private static int capacityFor(final int expected) {
+		final int want = Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, 2 * Math.max(0, expected)));
+		return Math.min(MAX_CAPACITY, Integer.highestOneBit(want - 1) << 1);
+	}
+
+	static boolean isLive(final TraceRef<?> tr) {
+		return (tr != null) && (tr != DELETED) && (tr != MOVED);
+	}
+
+	private static final class Table<T> {
+		final AtomicReferenceArray<TraceRef<T>> slots;
+		final int mask;
+		final int threshold;
+		final AtomicInteger used = new AtomicInteger(0); // Slots no longer empty
+		final AtomicInteger transferIndex = new AtomicInteger(0); // Next block to copy to the replacement
+		final AtomicInteger transferred = new AtomicInteger(0); // Slots copied so far
+		volatile Table<T> next; // Replacement being filled
+
+		Table(final int capacity) {
+			slots = new AtomicReferenceArray<>(capacity);
+			mask = capacity - 1;
+			threshold = capacity - (capacity >>> 2);
+		}
+
+		/**
+		 * @return false if the caller must look at the table again and retry
+		 */
+		@SuppressWarnings("unchecked")
+		boolean insert(final TraceRef<T> ref, final T e) {
+			final int hash = ref.hash;
+			int reuse = -1;
+			for (int i = 0, idx = hash & mask; i <= mask; ++i, idx = (idx + 1) & mask) {
+				final TraceRef<T> t = slots.get(idx);
+				if (t == null) {
+					if (reuse >= 0) {
+						return slots.compareAndSet(reuse, DELETED, ref);
+					}
+					if (slots.compareAndSet(idx, null, ref)) {
+						used.incrementAndGet();
+						return true;
+					}
+					return false;
+				}
+				if (t == MOVED) {
+					return false;
+				}
+				if (t == DELETED) {
+					if (reuse < 0) {
+						reuse = idx;
+					}
+				} else if ((t.hash == hash) && (e == t.get())) {
+					throw new IllegalArgumentException("Duplicate: " + e);
+				}
+			}
+			return (reuse >= 0) && slots.compareAndSet(reuse, DELETED, ref);
+		}
+
+		TraceRef<T> find(final int hash, final T e) {
+			for (int i = 0, idx = hash & mask; i <= mask; ++i, idx = (idx + 1) & mask) {
+				final TraceRef<T> t = slots.get(idx);
+				if (t == null) {
+					return null;
+				}
+				if ((t.hash == hash) && isLive(t) && (e == t.get())) {
+					return t;
+				}
 			}
-			newLen = old.length - 1;
+			return null;
+		}
 
-			if ((old.length > 1) && ((update == null) || (update.length != newLen))) {
-				update = new TraceRef[newLen];
+		/**
+		 * Deletes by element or by reference
+		 * @return What was deleted, or null if not in this table
+		 */
+		@SuppressWarnings("unchecked")
+		TraceRef<T> delete(final int hash, final T e, final TraceRef<T> ref) {
+			for (int i = 0, idx = hash & mask; i <= mask;) {
+				final TraceRef<T> t = slots.get(idx);
+				if (t == null) {
+					return null;
+				}
+				if ((ref != null) ? (t == ref) : ((t.hash == hash) && isLive(t) && (e == t.get()))) {
+					if (slots.compareAndSet(idx, t, DELETED)) {
+						return t;
+					}
+					// Moved to the next table; look at the slot again
+				} else {
+					++i;
+					idx = (idx + 1) & mask;
+				}
 			}
+			return null;
+		}
 
-			int outPos = 0;
-			for (int i = 0; i < old.length; ++i) {
-				final TraceRef<T> t = old[i];
-				if ((outPos != i) || (t != e)) {
-					if ((update == null) || (outPos >= newLen)) {
-						throw new IllegalArgumentException("Not tracked: " + e);
+		/**
+		 * Copies a slot to the next table then marks it moved.  Live entries are in at least
+		 * one table at all times.
+		 */
+		@SuppressWarnings("unchecked")
+		void moveTo(final int idx, final Table<T> dest) {
+			while (true) {
+				final TraceRef<T> t = slots.get(idx);
+				if (isLive(t)) {
+					dest.put(t);
+					if (slots.compareAndSet(idx, t, MOVED)) {
+						return;
 					}
-					update[outPos++] = t;
+					// Deleted while copying
+					dest.delete(t.hash, null, t);
+				} else if (slots.compareAndSet(idx, t, MOVED)) {
+					return;
 				}
 			}
-		} while (!references.compareAndSet(idx, old, (newLen > 0) ? update : null));
+		}
+
+		private void put(final TraceRef<T> ref) {
+			for (int idx = ref.hash & mask;; idx = (idx + 1) & mask) {
+				if (slots.compareAndSet(idx, null, ref)) {
+					used.incrementAndGet();
+					return;
+				}
+			}
+		}
 	}
 
 	@SuppressWarnings("serial")
 	public static class Trace extends RuntimeException {
-		public Trace() {
-			super("Leak trace");
+		/**
+		 * Immutable once built so that checkouts from the same place can share one
+		 * @param frames Bounded frames from CallSites.  The VM's own backtrace is never filled in.
+		 */
+		Trace(final StackTraceElement[] frames) {
+			super("Leak trace", null, false, true);
+			setStackTrace(frames);
+		}
+
+		@Override
+		public Throwable fillInStackTrace() {
+			return this; // The frames come from CallSites
 		}
 		
 		@Override
@@ -217,6 +382,10 @@ class ObjectTracker<T> {
 	    }
 	}
 	
+	static Taker toTaker(final TraceRef<?> traceRef) {
+		return new TakerImpl(traceRef);
+	}
+
 	private static class TakerImpl implements Taker {
 		private final Trace trace;
 		private final Thread thread;
@@ -259,25 +428,53 @@ class ObjectTracker<T> {
 	}
 
 	public static class TraceRef<T> extends WeakReference<T> {
+		@SuppressWarnings("rawtypes")
+		private static final AtomicIntegerFieldUpdater<TraceRef> GENERATION = AtomicIntegerFieldUpdater.newUpdater(TraceRef.class, "generation");
+
 		final int hash;
+		private volatile int generation; // Advances on every return so stale Leases can be caught
 		private Trace trace;
+		private CallSiteProfile.Site site;
+		private boolean suspected; // Reported as a possible leak during this checkout
 		private Thread thread;
 		private long time;
+		private long nanoTime;
 
 		TraceRef(final int hash, final T referent, final ReferenceQueue<? super T> q) {
 			super(referent, q);
 			this.hash = hash;
 		}
 
-		public void checkOut(final boolean traceOn) {
-			trace = traceOn ? (Trace)(new Trace().fillInStackTrace()) : null;
+		/**
+		 * @param trace Where it was taken, or null if not traced
+		 */
+		public void checkOut(final Trace trace) {
+			checkOut(trace, null, Thread.currentThread());
+		}
+
+		/**
+		 * @param site Where to count the hold time, or null
+		 * @param thread Thread that asked for it, which isn't the current one when handed to a future
+		 */
+		void checkOut(final Trace trace, final CallSiteProfile.Site site, final Thread thread) {
+			this.trace = trace;
+			this.site = site;
+			suspected = false;
 			time = System.currentTimeMillis();
-			this.thread = Thread.currentThread();
+			nanoTime = System.nanoTime();
+			this.thread = thread;
 		}
 
 		public long getTime() {
 			return time;
 		}
+
+		/**
+		 * @return System.nanoTime() when checked out, for measuring short hold times
+		 */
+		public long getNanoTime() {
+			return nanoTime;
+		}
 		
 		public Thread getThread() {
 			return thread;
@@ -287,7 +484,42 @@ class ObjectTracker<T> {
 			return trace;
 		}
 
+		int getGeneration() {
+			return generation;
+		}
+
+		/**
+		 * Claim the return of a Lease
+		 * @return false if the Lease's element was already returned
+		 */
+		boolean release(final int leased) {
+			return GENERATION.compareAndSet(this, leased, leased + 1);
+		}
+
+		/**
+		 * Return without a Lease, ending any Lease of it
+		 */
+		void release() {
+			GENERATION.incrementAndGet(this);
+		}
+
+		/**
+		 * @return false if already reported during this checkout
+		 */
+		boolean suspect() {
+			if (suspected) {
+				return false;
+			}
+			suspected = true;
+			return true;
+		}
+
+		CallSiteProfile.Site getSite() {
+			return site;
+		}
+
 		public void checkIn() {
+			site = null;
 			thread= null;
 			trace = null;
 		}
@@ -1,18 +1,28 @@
 package us.pixelmemory.pool;
 
+import java.lang.ref.WeakReference;
 import java.time.Instant;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.LockSupport;
-import java.util.function.Predicate;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +40,35 @@ import us.pixelmemory.pool.PoolSettings.LeakTracing;
  * a waiting thread.  No thread will be stuck waiting on that one resource that is taking forever
  * to create.
  * 
+ * With thread affinity on, a returned element is parked in a slot owned by the returning thread.
+ * That thread's next get() takes it back without touching the shared stack.  Other threads steal
+ * from cold slots when the shared stack is empty.
+ * 
+ * The shared stack may be split into stripes, each with its own ready and waiting stacks.  A thread
+ * works on the stripe picked by its probe hash and steals from the others when its own is empty.
+ * LIFO and FIFO order then apply per stripe.
+ * 
+ * Ready and waiting stacks are separate.  A thread that starts waiting looks for ready elements again
+ * after it's queued, and a thread that adds a ready element looks for waiting threads again after it's
+ * added, so one of them always sees the other.
+ * 
+ * Steady state get() and takeBack() don't allocate.  Stacks link recycled records by index under a
+ * stamped head so a record that was popped and pushed again can't be mistaken for the one that was
+ * read (ABA).  Each thread keeps a spare Node and its own Waiting record for re-use.  Records of threads
+ * that ended are unlinked a few at a time by threads that start using the pool later.
+ * 
+ * getAsync() queues a Waiting record holding a future instead of parking.  A returned element completes
+ * that future on the returning thread, and the caller's future is completed from it on the executor so that
+ * the caller's callbacks never run on a thread returning, creating, or servicing elements.  The servicing
+ * thread expires futures that reach their deadline.
+ * 
+ * getMany() and reserve() take several elements, all or nothing.  Only one bulk request gathers at a
+ * time so that two of them can't each hold part of what they need and wait forever for the rest.
+ * It starts only when enough are ready or may still open.  Otherwise it lets go of the gate and retries
+ * so that one large request can't sit on part of the pool while smaller ones queue behind it.
+ * 
+ * Waiting threads queue by Priority.  A returned element goes to the highest priority waiter in its stripe.
+ * 
  * @author Kevin McMurtrie
  *
  * @param <T>
@@ -37,13 +76,29 @@ import us.pixelmemory.pool.PoolSettings.LeakTracing;
  */
 
 public class Pool<T, ERR extends Exception> {
-	private static final Servicing SERVICING = new Servicing();
+	/**
+	 * Number of servicing threads shared by every Pool in the JVM.  Pools are spread across them round-robin
+	 * so that one slow Pool can't delay servicing of all the others.  Read once, e.g. -Dus.pixelmemory.pool.servicingThreads=4
+	 */
+	public static final String SERVICING_THREADS_PROPERTY = "us.pixelmemory.pool.servicingThreads";
+	private static final Servicing[] SERVICING = Servicing.createShards(Integer.getInteger(SERVICING_THREADS_PROPERTY, 1));
+	private static final AtomicInteger nextShard = new AtomicInteger(0);
 	private static final ExecutorService EXEC = Executors.newCachedThreadPool(r -> {
 		final Thread t = new Thread(r, "Pool async task worker");
 		t.setDaemon(true);
 		return t;
 	});
 	private static final long LEAK_TIME= TimeUnit.HOURS.toMillis(2);
+	private static final int LEAK_SCAN_BATCH = 1024; // Tracker slots examined per service pass
+	private static final int SWEEP_STEPS = 4; // Thread records examined per new thread
+	private static final int SERVICE_SWEEP_STEPS = 256; // Thread records examined per service pass
+
+	/**
+	 * Holder so that the virtual thread executor only exists when used
+	 */
+	private static final class Virtual {
+		static final ExecutorService EXEC = newVirtualExecutor();
+	}
 
 	
 	final Logger log;
@@ -51,32 +106,155 @@ public class Pool<T, ERR extends Exception> {
 	private final String name;
 	private final PoolSource<T, ERR> source;
 	private final ObjectTracker<T> tracker;
-
-
-	private final AtomicReference<MultiStackHead<T>> head = new AtomicReference<>(new MultiStackHead<>());
+	private final ExecutorService exec;
+	private final TaskQueue creating;
+	private final TaskQueue validating; // Idle elements
+	private final TaskQueue checkInValidating; // Returned elements that callers may be waiting for
+	private final TaskQueue closing;
+	private final AdaptiveLimit adaptive;
+	private final PoolListener listener; // Null for none so there's no cost
+	private final AtomicInteger excess = new AtomicInteger(0); // Over the adaptive limit and to be closed
+	private final AtomicInteger shedding = new AtomicInteger(0); // Chosen to close for the adaptive limit but still tracked
+	private final LongAdder validations = new LongAdder();
+	private final LongAdder validationFailures = new LongAdder();
+	private final LongAdder validationNanos = new LongAdder();
+	private final LongAdder checkOuts = new LongAdder();
+	private final LongAdder leakTraces = new LongAdder();
+	private final LongAdder leakTraceNanos = new LongAdder();
+	private final LongAdder suspectedLeaks = new LongAdder();
+	private final Consumer<ObjectTracker.TraceRef<T>> leakSuspect = this::suspect;
+	private final LongAdder readyCount = new LongAdder(); // In ready stacks and parked slots
+	private final LongAdder waitingCount = new LongAdder(); // Callers and futures waiting now
+	private final LatencyHistogram acquireTime = new LatencyHistogram();
+	private final LatencyHistogram holdTime = new LatencyHistogram();
+	private final LatencyHistogram createTime = new LatencyHistogram();
+	private final LatencyHistogram validateTime = new LatencyHistogram();
+	private final CallSites frames;
+	private final CallSiteProfile callSites; // Null when off
+	private volatile boolean validationBacklog = false; // Idle validation skipped elements because the pipeline was full
+
+
+	private final Stripe<T>[] stripes;
+	private final Registry<Node<T>> nodes = new Registry<>();
+	private final Registry<Waiting<T>> waiters = new Registry<>();
+	private final IndexStack<Node<T>> freeNodes = new IndexStack<>();
+	private final IndexStack<Waiting<T>> freeWaiters = new IndexStack<>();
+	private final ThreadLocal<Local<T>> locals = ThreadLocal.withInitial(this::registerLocal);
+	private final AtomicReference<Local<T>> localChain = new AtomicReference<>(null);
+	private final AtomicBoolean sweeping = new AtomicBoolean(false);
+	private Local<T> sweepPrev = null; // For use only by the thread that set sweeping
+	private final boolean threadAffinity;
 	private final AtomicInteger pendingOpen = new AtomicInteger(0);
+	private final Semaphore batchGate = new Semaphore(1, true);
+	final AtomicInteger reserved = new AtomicInteger(0); // Idle in Reservations
 	private volatile Exception currentFailure = null;
 	private volatile boolean showLeaks;
 	private volatile boolean openingThrottled = false; // Optimization to silence requests for more elements
 	private volatile long lastLeakTime= 0;
 	private volatile boolean running = true;
 	private long lastOpenTime = 0;	//For use only in Servicing thread
+	private int evictable = 0;	//For use only in Servicing thread
+	private int leakScanCursor = 0;	//For use only in Servicing thread
+	private long leakScanTime = 0;	//For use only in Servicing thread
+	private long nextLeakScan = 0;	//For use only in Servicing thread
+	final Servicing servicing = SERVICING[Math.floorMod(nextShard.getAndIncrement(), SERVICING.length)];
+	private final Servicing.ServiceLink serviceLink = new Servicing.ServiceLink(this);
+	private final DeadlineHeap.Entry<Pool<?, ?>> serviceEntry = new DeadlineHeap.Entry<>(this);	//For use only in Servicing thread
+
 
+	@SuppressWarnings("unchecked")
+	private static <T> Stripe<T>[] createStripes(final int count, final int slots) {
+		int n = 1;
+		while (n < count) {
+			n <<= 1;
+		}
+		final Stripe<T>[] s = (Stripe<T>[]) new Stripe<?>[n];
+		for (int i = 0; i < n; ++i) {
+			s[i] = new Stripe<>(slots);
+		}
+		return s;
+	}
 
 	public Pool(final String name, final PoolSource<T, ERR> source, final PoolSettings settings) {
 		this.source = source;
 		this.name = name;
 		showLeaks = settings.leakTracing == LeakTracing.ON;
-		tracker = new ObjectTracker<>(3 * settings.maxOpen);
+		tracker = new ObjectTracker<>(settings.minIdle);
+		threadAffinity = settings.threadAffinity;
+		stripes = createStripes(settings.stripes, settings.slotArray ? Math.max(1, settings.maxOpen) : 0);
 		this.settings = settings;
 		log  = LoggerFactory.getLogger(getClass().getName() + '.' + name);
+		frames = new CallSites(settings.skipFrames);
+		if ((settings.callSiteProfileSize > 0) && !CallSites.hasStackWalker()) {
+			log.warn("Call site profiling needs StackWalker (Java 9+).  It's off.");
+		}
+		callSites = ((settings.callSiteProfileSize > 0) && CallSites.hasStackWalker()) ? new CallSiteProfile(settings.callSiteProfileSize, settings.leakTraceSampling) : null;
+		listener = (settings.listener != null) ? new GuardedListener(settings.listener, log) : null;
+		if (settings.virtualThreads && (Virtual.EXEC == null)) {
+			log.warn("Virtual threads are not available.  Using platform threads.");
+		}
+		exec = (settings.virtualThreads && (Virtual.EXEC != null)) ? Virtual.EXEC : EXEC;
+		creating = new TaskQueue(exec, Math.max(settings.openConcurrent, settings.minIdle), log);
+		validating = new TaskQueue(exec, settings.validateConcurrent, log);
+		// An element is validated at most once at a time, so this can't grow past maxOpen even when the database hangs
+		checkInValidating = new TaskQueue(exec, settings.maxOpen, log);
+		closing = new TaskQueue(exec, settings.closeConcurrent, log);
+		adaptive = settings.adaptiveLimit ? new AdaptiveLimit(settings.openConcurrent, settings.maxOpen) : null;
+	}
+
+	/**
+	 * @return Latency metrics of each servicing thread.  See SERVICING_THREADS_PROPERTY.
+	 */
+	public static List<ServicingStats> getServicingStats() {
+		final List<ServicingStats> l = new ArrayList<>(SERVICING.length);
+		for (final Servicing s : SERVICING) {
+			l.add(s.stats());
+		}
+		return l;
+	}
+
+	/**
+	 * @return true if the JVM can run tasks on virtual threads
+	 */
+	public static boolean isVirtualThreadsAvailable() {
+		return Virtual.EXEC != null;
+	}
+
+	/**
+	 * Executors.newVirtualThreadPerTaskExecutor() is Java 21+ so it's found by reflection.
+	 * @return null if not available
+	 */
+	static ExecutorService newVirtualExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (final ReflectiveOperationException | RuntimeException err) {
+			return null;
+		}
 	}
 
 	public void takeBack(final T element) {
+		takeBack(element, 0);
+	}
+
+	/**
+	 * Return an element that the caller has seen working.  It's validated only if that was longer
+	 * ago than validateInterval.
+	 * @param lastSuccessMillis System.currentTimeMillis() of the last successful use, or 0 if unknown
+	 */
+	public void takeBack(final T element, final long lastSuccessMillis) {
 		final ObjectTracker.TraceRef<T> traceRef = tracker.getTraceRef(element);
+		traceRef.release();
+		takeBack(traceRef, element, lastSuccessMillis);
+	}
+
+	/**
+	 * Return an element whose TraceRef is already known, skipping the tracker lookup
+	 */
+	void takeBack(final ObjectTracker.TraceRef<T> traceRef, final T element, final long lastSuccessMillis) {
 		final long now = System.currentTimeMillis();
 		final long checkOutTime = traceRef.getTime();
 		final long useTime = now - checkOutTime;
+		final long lastTested = Math.max(checkOutTime, Math.min(now, lastSuccessMillis));
 
 		if (useTime > settings.warnLongUseMillis) {
 			// Bad coder held the element too long.
@@ -92,6 +270,18 @@ public class Pool<T, ERR extends Exception> {
 			if (settings.leakTracing == LeakTracing.AUTO) {
 				showLeaks = true;
 			}
+			if (listener != null) {
+				listener.onLongUse(this, useTime);
+			}
+		}
+		final long holdNanos = System.nanoTime() - traceRef.getNanoTime();
+		holdTime.record(holdNanos);
+		final CallSiteProfile.Site site = traceRef.getSite();
+		if (site != null) {
+			site.held(holdNanos);
+		}
+		if (adaptive != null) {
+			adaptive.sampleHold(holdNanos);
 		}
 		traceRef.checkIn();
 
@@ -99,21 +289,367 @@ public class Pool<T, ERR extends Exception> {
 			sendBackAsync(element);
 			return;
 		}
+		if (shed()) {
+			closing.execute(() -> {
+				try {
+					sendBack(element);
+				} finally {
+					shedding.decrementAndGet();
+				}
+			});
+			return;
+		}
 
-		if (useTime > settings.validateInterval) {
-			validateAsync(element, now);
+		if ((now - lastTested) > settings.validateInterval) {
+			validateAsync(checkInValidating, element, now);
 			return;
 		}
 
-		push(element, now, checkOutTime);
+		final Local<T> local = locals.get();
+		if (!threadAffinity || !park(local, element, now, lastTested)) {
+			push(local, element, now, lastTested);
+		}
 	}
 
 	public T get() throws TimeoutException, ERR {
-		final T e = pop();
-		tracker.getTraceRef(e).checkOut(showLeaks);
+		return get(Priority.NORMAL);
+	}
+
+	/**
+	 * Get an element.  Returned elements go to higher priority waiters first.
+	 */
+	public T get(final Priority priority) throws TimeoutException, ERR {
+		final T e = pop(settings.giveUpMillis, priority);
+		checkOut(tracker.getTraceRef(e));
 		return e;
 	}
 
+	/**
+	 * Get an element, waiting no longer than the caller's budget.
+	 * The wait is also limited by giveUpBrokenMillis while the source is failing.
+	 */
+	public T get(final long timeout, final TimeUnit unit) throws TimeoutException, ERR {
+		return get(timeout, unit, Priority.NORMAL);
+	}
+
+	public T get(final long timeout, final TimeUnit unit, final Priority priority) throws TimeoutException, ERR {
+		final T e = pop(ceilMillis(timeout, unit), priority);
+		checkOut(tracker.getTraceRef(e));
+		return e;
+	}
+
+	/**
+	 * Lease an element.  Closing the Lease returns the element without looking it up again.
+	 */
+	public Lease<T> lease() throws TimeoutException, ERR {
+		return lease(Priority.NORMAL);
+	}
+
+	public Lease<T> lease(final Priority priority) throws TimeoutException, ERR {
+		return newLease(pop(settings.giveUpMillis, priority));
+	}
+
+	/**
+	 * Lease an element, waiting no longer than the caller's budget
+	 */
+	public Lease<T> lease(final long timeout, final TimeUnit unit, final Priority priority) throws TimeoutException, ERR {
+		return newLease(pop(ceilMillis(timeout, unit), priority));
+	}
+
+	/**
+	 * @return Timeout rounded up to whole milliseconds, saturating rather than overflowing
+	 */
+	static long ceilMillis(final long timeout, final TimeUnit unit) {
+		final long nanos = unit.toNanos(timeout);
+		if (nanos <= 0) {
+			return 0;
+		}
+		return TimeUnit.NANOSECONDS.toMillis((nanos > (Long.MAX_VALUE - 999_999L)) ? Long.MAX_VALUE : nanos + 999_999L);
+	}
+
+	/**
+	 * @return System.currentTimeMillis() deadline, saturating rather than overflowing
+	 */
+	static long deadlineMillis(final long timeoutMillis) {
+		final long now = System.currentTimeMillis();
+		return (timeoutMillis < (Long.MAX_VALUE - now)) ? now + timeoutMillis : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Lease an element that was taken with getAsync() or getMany()
+	 */
+	public Lease<T> toLease(final T e) {
+		return new Lease<>(this, e, tracker.getTraceRef(e));
+	}
+
+	private Lease<T> newLease(final T e) {
+		final ObjectTracker.TraceRef<T> traceRef = tracker.getTraceRef(e);
+		checkOut(traceRef);
+		return new Lease<>(this, e, traceRef);
+	}
+
+	/**
+	 * Mark as taken by the current thread, with a trace if leak tracing is on and this checkout is sampled
+	 */
+	private void checkOut(final ObjectTracker.TraceRef<T> traceRef) {
+		checkOuts.increment();
+		CallSiteProfile.Site site = null;
+		if (callSites != null) {
+			final Local<T> local = locals.get();
+			site = callSite();
+			if (site != null) {
+				site.checkedOut(local.waitNanos);
+			}
+			local.waitNanos = 0;
+		}
+		traceRef.checkOut(leakTrace(), site, Thread.currentThread());
+	}
+
+	/**
+	 * @return Profile entry of the current thread's caller if this checkout is sampled, otherwise null.
+	 *         A new one that doesn't fit yet is ranked by the servicing thread.
+	 */
+	private CallSiteProfile.Site callSite() {
+		if (!callSites.sample()) {
+			return null;
+		}
+		final CallSiteProfile.Site site = callSites.site(frames.caller());
+		if ((site != null) && !site.ranked) {
+			servicing.request(this);
+		}
+		return site;
+	}
+
+	/**
+	 * @return Trace of the current thread's caller if leak tracing is on and this checkout is sampled, otherwise null
+	 */
+	private ObjectTracker.Trace leakTrace() {
+		if (showLeaks && ((settings.leakTraceSampling <= 1) || (ThreadLocalRandom.current().nextInt(settings.leakTraceSampling) == 0))) {
+			final long start = System.nanoTime();
+			final ObjectTracker.Trace trace = frames.trace(settings.leakTraceDepth);
+			leakTraceNanos.add(System.nanoTime() - start);
+			leakTraces.increment();
+			return trace;
+		}
+		return null;
+	}
+
+	/**
+	 * Open elements up to minIdle in parallel, ignoring openConcurrent, so that they're ready before traffic arrives.
+	 * @return Future that completes when all opening is done.  It fails if any failed to open.
+	 */
+	public CompletableFuture<Void> warmUp() {
+		final CompletableFuture<Void> ready = new CompletableFuture<>();
+		if (!running) {
+			ready.completeExceptionally(shutDownFailure());
+			return ready;
+		}
+		final int target = Math.min(settings.minIdle, settings.maxOpen);
+		int n;
+		for (;;) {
+			// Reserve with a CAS so that concurrent callers can't both open the same shortfall
+			final int opening = pendingOpen.get();
+			n = target - (tracker.count() + opening);
+			if (n <= 0) {
+				ready.complete(null);
+				return ready;
+			}
+			if (pendingOpen.compareAndSet(opening, opening + n)) {
+				break;
+			}
+		}
+		
+		final AtomicInteger remaining = new AtomicInteger(n);
+		final AtomicReference<Exception> failure = new AtomicReference<>(null);
+		for (int i = 0; i < n; ++i) {
+			creating.execute(() -> {
+				final Exception err = create();
+				if (err != null) {
+					failure.compareAndSet(null, err);
+				}
+				if (remaining.decrementAndGet() == 0) {
+					if (failure.get() == null) {
+						ready.complete(null);
+					} else {
+						ready.completeExceptionally(failure.get());
+					}
+				}
+			});
+		}
+		return ready;
+	}
+
+	/**
+	 * Get n elements, all or nothing.
+	 * Elements already ready are taken in one pass.  The rest are waited for one at a time.
+	 * @throws TimeoutException if n elements weren't available in time.  None are kept.
+	 */
+	public List<T> getMany(final int n, final long timeoutMillis) throws TimeoutException, ERR {
+		return getMany(n, timeoutMillis, Priority.NORMAL);
+	}
+
+	/**
+	 * Get n elements, all or nothing, waiting at the given priority.
+	 * @throws TimeoutException if n elements weren't available in time.  None are kept.
+	 */
+	public List<T> getMany(final int n, final long timeoutMillis, final Priority priority) throws TimeoutException, ERR {
+		if ((n < 0) || (n > settings.maxOpen)) {
+			throw new IllegalArgumentException("Can't get " + n + " with maxOpen=" + settings.maxOpen);
+		}
+		final long deadline = deadlineMillis(timeoutMillis);
+		final List<T> taken = new ArrayList<>(n);
+		long backOff = 1;
+		while (true) {
+			try {
+				if (!batchGate.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+					throw new TimeoutException();
+				}
+			} catch (final InterruptedException err) {
+				Thread.currentThread().interrupt();
+				throw (TimeoutException) new TimeoutException("Interrupted").initCause(err);
+			}
+
+			boolean done = false;
+			try {
+				// Waiting below is then only for elements that are opening or racing get() callers
+				if (countAvailable() + Math.max(0, getLimit() - tracker.count()) >= n) {
+					drainReady(taken, n);
+					while (taken.size() < n) {
+						final long wait = deadline - System.currentTimeMillis();
+						if (wait <= 0) {
+							throw new TimeoutException();
+						}
+						final T e = pop(wait, priority);
+						checkOut(tracker.getTraceRef(e));
+						taken.add(e);
+					}
+					done = true;
+					return taken;
+				}
+			} finally {
+				batchGate.release();
+				if (!done) {
+					for (final T e : taken) {
+						takeBack(e);
+					}
+				}
+			}
+
+			// Too many are checked out.  Wait for returns holding nothing.
+			final long wait = deadline - System.currentTimeMillis();
+			if (wait <= 0) {
+				throw new TimeoutException();
+			}
+			try {
+				Thread.sleep(Math.min(wait, backOff));
+			} catch (final InterruptedException err) {
+				Thread.currentThread().interrupt();
+				throw (TimeoutException) new TimeoutException("Interrupted").initCause(err);
+			}
+			backOff = Math.min(16, backOff * 2);
+		}
+	}
+
+	/**
+	 * Hold n elements for one job, all or nothing.  Close the Reservation to return them.
+	 * @throws TimeoutException if n elements weren't available in time
+	 */
+	public Reservation<T> reserve(final int n, final long timeoutMillis) throws TimeoutException, ERR {
+		return reserve(n, timeoutMillis, Priority.NORMAL);
+	}
+
+	public Reservation<T> reserve(final int n, final long timeoutMillis, final Priority priority) throws TimeoutException, ERR {
+		return new Reservation<>(this, getMany(n, timeoutMillis, priority));
+	}
+
+	/**
+	 * Get an element without blocking.
+	 * The future completes on an executor thread unless an element is ready now.  Cancel the future to stop waiting.
+	 * @param timeoutMillis Time until the future fails with a TimeoutException
+	 */
+	public CompletableFuture<T> getAsync(final long timeoutMillis) {
+		return getAsync(timeoutMillis, Priority.NORMAL);
+	}
+
+	/**
+	 * Get an element without blocking, waiting at the given priority
+	 * @param timeoutMillis Time until the future fails with a TimeoutException
+	 */
+	public CompletableFuture<T> getAsync(final long timeoutMillis, final Priority priority) {
+		final Local<T> local = locals.get();
+		final Stripe<T> home = homeStripe();
+		final T ready = poll(local, home);
+		if (ready != null) {
+			acquiredReady(local);
+			checkOut(tracker.getTraceRef(ready));
+			return CompletableFuture.completedFuture(ready);
+		}
+		final long start = System.nanoTime();
+
+		final CompletableFuture<T> f = new CompletableFuture<>();
+		if (!running) {
+			acquireTime.record(System.nanoTime() - start);
+			f.completeExceptionally(shutDownFailure());
+			return f;
+		}
+
+		Waiting<T> w = freeWaiters.pop(waiters);
+		if (w == null) {
+			w = waiters.create(Waiting::new);
+		}
+		// Who asked is known only here.  The element is checked out later on whichever thread hands it off.
+		w.prepare(f, deadlineMillis(timeoutMillis), Thread.currentThread(), (callSites != null) ? callSite() : null, leakTrace());
+		waitingCount.increment();
+		home.waiting[priority.ordinal()].push(w);
+		if (adaptive != null) {
+			adaptive.sampleWait();
+		}
+		
+		// Queued before looking again.  Put anything found through the hand-off path.
+		final Node<T> n = tryPopAny(local);
+		if (n != null) {
+			pushTo(local, home, n);
+			settle(local);
+		}
+		
+		// Always request so that expiration is scheduled
+		servicing.request(this);
+		return onExecutor(f, start);
+	}
+
+	/**
+	 * @param start System.nanoTime() when the wait started
+	 * @return Future for the caller that's completed on the executor.  Cancelling it cancels the wait.
+	 */
+	private CompletableFuture<T> onExecutor(final CompletableFuture<T> f, final long start) {
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		f.whenComplete((e, err) -> {
+			waitingCount.decrement(); // Before the caller's callbacks can look
+			final long waited = System.nanoTime() - start;
+			acquireTime.record(waited);
+			if (listener != null) {
+				if (err == null) {
+					listener.onAcquire(this, waited);
+				} else if (err instanceof TimeoutException) {
+					listener.onTimeout(this, waited);
+				}
+			}
+			exec.execute(() -> {
+				if (err != null) {
+					result.completeExceptionally(err);
+				} else if (!result.complete(e)) {
+					takeBack(e); // Cancelled meanwhile
+				}
+			});
+		});
+		result.whenComplete((e, err) -> {
+			if (result.isCancelled()) {
+				f.cancel(false);
+			}
+		});
+		return result;
+	}
+
 	public void abandon(final T e) {
 		sendBackAsync(e);
 	}
@@ -121,15 +657,37 @@ public class Pool<T, ERR extends Exception> {
 	public void shutdown() {
 		running = false;
 		currentFailure = (RuntimeException) new RuntimeException("Shutdown").fillInStackTrace();
-		SERVICING.request(this);
+		servicing.request(this);
+	}
+
+	/**
+	 * @return Why the Pool isn't running.  A racing shutdown() may not have set currentFailure yet.
+	 */
+	private Exception shutDownFailure() {
+		final Exception err = currentFailure;
+		return (err != null) ? err : new IllegalStateException("Pool shut down");
 	}
 
 	public int countWaiting() {
-		return filteredCount(head.get().waiting, Waiting::isAlive);
+		return (int) Math.max(0, waitingCount.sum());
 	}
 
 	public int countAvailable() {
-		return count(head.get().ready);
+		return (int) Math.max(0, readyCount.sum());
+	}
+	
+	/**
+	 * @return Number of idle elements held in Reservations
+	 */
+	public int countReserved() {
+		return reserved.get();
+	}
+	
+	/**
+	 * @return Maximum that may be open now.  This is maxOpen unless the limit is adaptive.
+	 */
+	public int getLimit() {
+		return (adaptive != null) ? adaptive.limit() : settings.maxOpen;
 	}
 	
 	public int size () {
@@ -140,9 +698,117 @@ public class Pool<T, ERR extends Exception> {
 		return pendingOpen.get();
 	}
 
+	/**
+	 * @return All the counts at once, without walking the pool
+	 */
+	public PoolStats getStats() {
+		return new PoolStats(name, tracker.count(), countAvailable(), countWaiting(), reserved.get(), pendingOpen.get(), getLimit(), creating.queued(), countQueuedValidate(),
+				closing.queued(), validations.sum(), validationFailures.sum());
+	}
+
+	/**
+	 * @return Time that get(), getAsync() and getMany() waited for an element, including those that timed out
+	 */
+	public LatencySnapshot getAcquireLatency() {
+		return acquireTime.snapshot();
+	}
+
+	/**
+	 * @return Time from get() to takeBack()
+	 */
+	public LatencySnapshot getHoldLatency() {
+		return holdTime.snapshot();
+	}
+
+	/**
+	 * @return Time the source took to create an element
+	 */
+	public LatencySnapshot getCreateLatency() {
+		return createTime.snapshot();
+	}
+
+	/**
+	 * @return Time the source took to validate an element
+	 */
+	public LatencySnapshot getValidateLatency() {
+		return validateTime.snapshot();
+	}
+
+	/**
+	 * @return Number of validations finished
+	 */
+	public long countValidations() {
+		return validations.sum();
+	}
+
+	/**
+	 * @return Number of validations that found a bad element or threw
+	 */
+	public long countValidationFailures() {
+		return validationFailures.sum();
+	}
+
+	/**
+	 * @return Mean time of validations in nanoseconds
+	 */
+	public long getMeanValidationNanos() {
+		final long count = validations.sum();
+		return (count > 0) ? validationNanos.sum() / count : 0;
+	}
+
+	/**
+	 * @return Checkouts reported because they were held longer than leakSuspectMillis
+	 */
+	public long countSuspectedLeaks() {
+		return suspectedLeaks.sum();
+	}
+
+	/**
+	 * @return Number of checkouts that captured a leak trace
+	 */
+	public long countLeakTraces() {
+		return leakTraces.sum();
+	}
+
+	/**
+	 * @return Time spent capturing leak traces averaged over all checkouts, traced or not, in nanoseconds
+	 */
+	public long getLeakTraceNanosPerCheckout() {
+		final long count = checkOuts.sum();
+		return (count > 0) ? leakTraceNanos.sum() / count : 0;
+	}
+
+	/**
+	 * @return Number of times this Pool was queued for servicing
+	 */
+	long countServiceQueued() {
+		return serviceLink.queued;
+	}
+
+	/**
+	 * @return Number of create tasks waiting for the openConcurrent cap
+	 */
+	public int countQueuedCreate() {
+		return creating.queued();
+	}
+
+	/**
+	 * @return Number of validation tasks waiting for the validateConcurrent cap, or for a thread at check-in
+	 */
+	public int countQueuedValidate() {
+		return validating.queued() + checkInValidating.queued();
+	}
+
+	/**
+	 * @return Number of close tasks waiting for the closeConcurrent cap
+	 */
+	public int countQueuedClose() {
+		return closing.queued();
+	}
+
 	@Override
 	public String toString() {
-		return "Pool " + name + " (open=" + tracker.count() + " waiting=" + countWaiting() + " available=" + countAvailable() + " opening=" + pendingOpen.get() + " throttled=" + openingThrottled + ")";
+		return "Pool " + name + " (open=" + tracker.count() + " waiting=" + countWaiting() + " available=" + countAvailable() + " reserved=" + reserved.get() + " opening=" + pendingOpen.get() + " limit=" + getLimit() + " queued=" + creating.queued() + '/' + countQueuedValidate() + '/' + closing.queued() + " throttled=" + openingThrottled + ")";
 	}
 
 	public String getName() {
@@ -153,6 +819,13 @@ public class Pool<T, ERR extends Exception> {
 		 return tracker.traceAll ();
 	}
 
+	/**
+	 * @return Call sites that took elements, ranked by time spent waiting for and holding them.  Empty unless callSiteProfileSize is set.
+	 */
+	public List<CallSiteStats> getCallSiteProfile() {
+		return (callSites != null) ? callSites.snapshot() : Collections.emptyList();
+	}
+
 	/**
 	 * Callback after Servicing.request();
 	 * This should not perform blocking I/O.
@@ -161,176 +834,623 @@ public class Pool<T, ERR extends Exception> {
 	 */
 	long service() {
 		collectLeaks();
+		if (callSites != null) {
+			callSites.promote();
+		}
 		if (running) {
-			return Math.min(idleValidations(), populate());
+			final long nextExpiration = pruneWaiting();
+			final long nextAdaptation = adapt();
+			final long nextScan = scanForLeaks();
+			final long nextService = Math.min(idleValidations(), populate());
+			return soonest(soonest(soonest(nextService, nextExpiration), nextAdaptation), nextScan);
 		} else {
 			return cleanUpForQuit();
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private T pop() throws TimeoutException, ERR {
-		final Waiting<T> w = new Waiting<>(Thread.currentThread());
+	/**
+	 * @return The sooner of two service times where negative means none
+	 */
+	private static long soonest(final long a, final long b) {
+		return ((b >= 0) && ((a < 0) || (b < a))) ? b : a;
+	}
+
+	private T pop(final long maxWait, final Priority priority) throws TimeoutException, ERR {
+		final Local<T> local = locals.get();
+		final Stripe<T> home = homeStripe();
+		final T ready = poll(local, home);
+		if (ready != null) {
+			acquiredReady(local);
+			return ready;
+		}
+		final long start = System.nanoTime();
+		boolean timedOut = false;
+		try {
+			final T e = popWaiting(local, home, maxWait, priority);
+			if (listener != null) {
+				listener.onAcquire(this, System.nanoTime() - start);
+			}
+			return e;
+		} catch (final TimeoutException err) {
+			timedOut = true;
+			throw err;
+		} finally {
+			final long waited = System.nanoTime() - start;
+			acquireTime.record(waited);
+			local.waitNanos = waited;
+			if (timedOut && (listener != null)) {
+				listener.onTimeout(this, waited);
+			}
+		}
+	}
+
+	/**
+	 * Count an acquisition that found an element ready
+	 */
+	private void acquiredReady(final Local<T> local) {
+		acquireTime.recordZero();
+		local.waitNanos = 0;
+		if (listener != null) {
+			listener.onAcquire(this, 0);
+		}
+	}
 
+	@SuppressWarnings("unchecked")
+	private T popWaiting(final Local<T> local, final Stripe<T> home, final long maxWait, final Priority priority) throws TimeoutException, ERR {
 		while (true) {
-			final MultiStackHead<T> original = swapMultiHead(h -> {
-				if (h.ready != null) {
-					h.ready = h.ready.next;
+			final T ready = poll(local, home);
+			if (ready != null) {
+				return ready;
+			}
+			
+			final Waiting<T> w = acquireWaiting(local);
+			waitingCount.increment();
+			home.waiting[priority.ordinal()].push(w);
+			if (!running) {
+				final T e = w.get(0);
+				if (e != null) {
+					sendBackAsync(e);
 				} else {
-					w.next = h.waiting;
-					h.waiting = w;
+					waitingCount.decrement();
 				}
-			});
-
-			if (original.ready != null) {
-				final T e = original.ready.tryTake();
+				throw (RuntimeException) shutDownFailure();
+			}
+			
+			// Queued before looking again so a concurrent push to a ready stack or slot can't be missed
+			final Node<T> n = tryPopAny(local);
+			if (n != null) {
+				final T e = w.get(0);
 				if (e != null) {
+					// Something was handed off while looking
+					pushTo(local, home, n);
+					settle(local);
 					return e;
 				}
-			} else {
-				if (!running) {
-					throw (RuntimeException) currentFailure;
-				}
-				if (!openingThrottled) {
-					SERVICING.request(this);
+				waitingCount.decrement();
+				final T taken = take(local, n);
+				if (taken != null) {
+					return taken;
 				}
-				final T e = w.get((currentFailure == null) ? settings.giveUpMillis : settings.giveUpBrokenMillis);
-				if (e == null) {
-					final Exception err = currentFailure;
-					if (err != null) {
-						if (err instanceof RuntimeException) {
-							throw (RuntimeException) err;
-						} else {
-							throw (ERR) err;
-						}
+				continue;
+			}
+			
+			if (adaptive != null) {
+				adaptive.sampleWait();
+			}
+			if (!openingThrottled) {
+				servicing.request(this);
+			}
+			final T e = w.get((currentFailure == null) ? maxWait : Math.min(maxWait, settings.giveUpBrokenMillis));
+			if (e == null) {
+				waitingCount.decrement();
+				final Exception err = currentFailure;
+				if (err != null) {
+					if (err instanceof RuntimeException) {
+						throw (RuntimeException) err;
 					} else {
-						throw new TimeoutException();
+						throw (ERR) err;
 					}
+				} else {
+					throw new TimeoutException();
 				}
-				return e;
 			}
+			return e;
 		}
 	}
 	
-	private void push(final T e, final long lastUsed, final long lastTested) {
-		if (settings.fifo) {
-			pushFair(e, lastUsed, lastTested);
-		} else {
-			pushUnfair(e, lastUsed, lastTested);
+	/**
+	 * Take a ready element without waiting
+	 */
+	private T poll(final Local<T> local, final Stripe<T> home) {
+		if (threadAffinity) {
+			final T e = local.tryTake();
+			if (e != null) {
+				return e;
+			}
+		}
+		if (home.slots != null) {
+			final int i = home.slots.poll();
+			if (i >= 0) {
+				readyCount.decrement();
+				return home.slots.take(i);
+			}
+		}
+		while (true) {
+			Node<T> n = tryPop(home);
+			if ((n == null) && ((stripes.length > 1) || threadAffinity)) {
+				n = stealReady(local, home);
+			}
+			if (n == null) {
+				return null;
+			}
+			final T e = take(local, n);
+			if (e != null) {
+				return e;
+			}
 		}
 	}
 
-	private void pushFair(final T e, final long lastUsed, final long lastTested) {
-		final Ready<T> r = new Ready<>(e, lastUsed, lastTested);
-
-		while (true) {
-			Waiting<T> waiting;
-			
-			//Try pulling a waiting thread from tail the easy way.
-			while ((waiting= lastWaiting(head.get().waiting)) != null) {
-				// This fails on races and needs to be retired
-				if (waiting.tryRespond(e)) {
-					//At last valid item so truncate list
-					waiting.next= null;
-					return;
+	/**
+	 * Take up to n ready elements into a list, detaching each ready stack once
+	 */
+	private void drainReady(final List<T> into, final int n) {
+		final Local<T> local = locals.get();
+		if (threadAffinity && (into.size() < n)) {
+			final T e = local.tryTake();
+			if (e != null) {
+				acquiredReady(local);
+				checkOut(tracker.getTraceRef(e));
+				into.add(e);
+			}
+		}
+		for (final Stripe<T> stripe : stripes) {
+			if (into.size() >= n) {
+				break;
+			}
+			if (stripe.slots != null) {
+				int slot;
+				while ((into.size() < n) && ((slot = stripe.slots.poll()) >= 0)) {
+					readyCount.decrement();
+					final T e = stripe.slots.take(slot);
+					acquiredReady(local);
+					checkOut(tracker.getTraceRef(e));
+					into.add(e);
+				}
+				if (into.size() >= n) {
+					break;
 				}
 			}
-			
-			//That didn't work.  Try with CAS that can pull waiting or add to ready.
-			final MultiStackHead<T> original = swapMultiHead(h -> {
-				if (h.waiting != null) {
-					if (h.waiting.next == null) {
-						// Consume solo
-						h.waiting = null;
-					} else {
-						// Skip dead
-						if (h.waiting.isDead()) {
-							h.waiting = h.waiting.next;
-							while ((h.waiting != null) && h.waiting.isDead()) {
-								h.waiting = h.waiting.next;
-							}
-						}
-					}
-				} else {
-					// Insert the ready element
-					r.next = h.ready;
-					h.ready = r;
+			int i = stripe.ready.popAll();
+			while ((i >= 0) && (into.size() < n)) {
+				final Node<T> node = nodes.get(i);
+				i = node.next;
+				readyCount.decrement();
+				final T e = take(local, node);
+				if (e != null) {
+					acquiredReady(local);
+					checkOut(tracker.getTraceRef(e));
+					into.add(e);
 				}
-			});
-			
-			if (original.waiting == null) {
-				return;  //Added to ready element list.  Done.
 			}
-			
-			while ((waiting= lastWaiting(original.waiting)) != null) {
-				// This fails on races and needs to be retired
-				if (waiting.tryRespond(e)) {
-					//At last valid item so truncate list
-					waiting.next= null;
-					return;
+			if (i >= 0) {
+				// Put back the rest
+				Node<T> last = nodes.get(i);
+				while (last.next >= 0) {
+					last = nodes.get(last.next);
 				}
+				stripe.ready.pushUnder(nodes, nodes.get(i), last);
+			}
+		}
+		settle(local);
+	}
+
+	private void push(final T e, final long lastUsed, final long lastTested) {
+		push(locals.get(), e, lastUsed, lastTested);
+	}
+
+	private void push(final Local<T> local, final T e, final long lastUsed, final long lastTested) {
+		final Stripe<T> home = homeStripe();
+		if ((home.slots != null) && !home.hasWaiting()) {
+			readyCount.increment();
+			if (home.slots.offer(e, lastUsed, lastTested)) {
+				settle(local);
+				return;
 			}
+			readyCount.decrement();
 		}
+		pushTo(local, home, fill(local, e, lastUsed, lastTested));
+		settle(local);
+	}
+
+	/**
+	 * Hand the Node's element to a waiting thread or add the Node to the ready stack.
+	 * Call settle() afterwards.
+	 * @return true if handed to a waiting thread, false if added to the ready stack
+	 */
+	private boolean pushTo(final Local<T> local, final Stripe<T> stripe, final Node<T> n) {
+		if (stripe.hasWaiting()) {
+			final T e = n.take();
+			if (e == null) {
+				recycle(local, n);
+				return true;
+			}
+			// Highest priority first
+			for (final IndexStack<Waiting<T>> lane : stripe.waiting) {
+				if (!lane.isEmpty() && (settings.fifo ? respondFair(lane, e) : respondUnfair(lane, e))) {
+					recycle(local, n);
+					return true;
+				}
+			}
+			n.put(e);
+		}
+		readyCount.increment();
+		if (stripe.slots != null) {
+			final T e = n.element;
+			if ((e != null) && stripe.slots.offer(e, n.lastUsed, n.lastTested)) {
+				n.take();
+				recycle(local, n);
+				return false;
+			}
+		}
+		stripe.ready.push(n);
+		return false;
 	}
 	
-	//Skip to last alive, being careful to not NPE with live truncation
-	private Waiting<T> lastWaiting(Waiting<T> waiting) {
-		Waiting<T> last = null;
-		for (Waiting<T> f = waiting; (f != null); f = f.next) {
-			if (f.isAlive()) {
-				last = f;
+	private boolean respondUnfair(final IndexStack<Waiting<T>> lane, final T e) {
+		Waiting<T> w;
+		while ((w = lane.pop(waiters)) != null) {
+			// This fails if the waiting thread timed out/died. It needs a re-try but it should be rare.
+			final boolean handedOff = respond(w, e);
+			release(w);
+			if (handedOff) {
+				return true;
 			}
 		}
-		return last;
+		return false;
 	}
 	
-	private void pushUnfair(final T e, final long lastUsed, final long lastTested) {
-		final Ready<T> r = new Ready<>(e, lastUsed, lastTested);
+	private boolean respondFair(final IndexStack<Waiting<T>> lane, final T e) {
+		// Take the whole waiting stack.  Nobody else can change it while it's private.
+		final int first = lane.popAll();
+		if (first < 0) {
+			return false;
+		}
+		
+		// Oldest is last.  This fails on races and needs to be retried.
+		boolean handedOff = false;
+		Waiting<T> oldest;
+		while (!handedOff && ((oldest = lastAlive(first)) != null)) {
+			handedOff = respond(oldest, e);
+		}
+		
+		requeueAlive(lane, first);
+		return handedOff;
+	}
 
-		while (true) {
-			final MultiStackHead<T> original = swapMultiHead(h -> {
-				if (h.waiting != null) {
-					// Take the waiting thread
-					h.waiting = h.waiting.next;
+	/**
+	 * Put the live records of a detached waiting chain back, in order, under any that started waiting meanwhile.
+	 * Call settle() afterwards.
+	 */
+	private void requeueAlive(final IndexStack<Waiting<T>> lane, final int first) {
+		Waiting<T> keepFirst = null;
+		Waiting<T> keepLast = null;
+		for (int i = first; i >= 0;) {
+			final Waiting<T> w = waiters.get(i);
+			i = w.next;
+			if (w.isAlive()) {
+				if (keepLast == null) {
+					keepFirst = w;
 				} else {
-					// Insert the ready element
-					r.next = h.ready;
-					h.ready = r;
+					keepLast.next = w.index;
 				}
-			});
+				keepLast = w;
+			} else {
+				release(w);
+			}
+		}
+		if (keepFirst != null) {
+			lane.pushUnder(waiters, keepFirst, keepLast);
+		}
+	}
+	
+	private boolean respond(final Waiting<T> w, final T e) {
+		final long since = w.since;
+		if (w.future == null) {
+			if (w.tryClaim(e)) {
+				waitingCount.decrement(); // Before the waiter wakes so it never sees itself counted
+				w.wake();
+				handedOff(since);
+				return true;
+			}
+			return false;
+		}
+		// The future's callbacks may run right away so the element must be checked out first, in the caller's name
+		final ObjectTracker.TraceRef<T> traceRef = tracker.getTraceRef(e);
+		checkOuts.increment();
+		traceRef.checkOut(w.trace, w.site, w.caller);
+		if (w.tryRespond(e)) {
+			if (w.site != null) {
+				w.site.checkedOut(System.nanoTime() - since);
+			}
+			handedOff(since);
+			return true;
+		}
+		traceRef.checkIn();
+		return false;
+	}
 
-			if (original.waiting == null) {
-				return;
+	private void handedOff(final long since) {
+		if (listener != null) {
+			listener.onHandOff(this, System.nanoTime() - since);
+		}
+	}
+
+	private Waiting<T> lastAlive(final int first) {
+		Waiting<T> last = null;
+		for (int i = first; i >= 0;) {
+			final Waiting<T> w = waiters.get(i);
+			if (w.isAlive()) {
+				last = w;
 			}
+			i = w.next;
+		}
+		return last;
+	}
 
-			// This fails if the waiting thread timed out/died. It needs a re-try but it should be rare.
-			if (original.waiting.tryRespond(e)) {
-				return;
+	/**
+	 * Something was added to a ready stack or waiting stack.  Threads that queued before it
+	 * arrived won't look again, so move ready elements to them.
+	 */
+	private void settle(final Local<T> local) {
+		if (hasWaiting()) {
+			balance(local);
+		}
+	}
+
+	private void balance(final Local<T> local) {
+		boolean again;
+		do {
+			again = false;
+			for (final Stripe<T> stripe : stripes) {
+				while (stripe.hasWaiting()) {
+					final Node<T> n = tryPopAny(local);
+					if (n == null) {
+						return;
+					}
+					if (!pushTo(local, stripe, n)) {
+						// Those were dead.  It's a new ready element that needs checking again.
+						again = true;
+						break;
+					}
+				}
+			}
+		} while (again);
+	}
+	
+	private boolean hasWaiting() {
+		for (final Stripe<T> stripe : stripes) {
+			if (stripe.hasWaiting()) {
+				return true;
 			}
 		}
+		return false;
 	}
 
-	private TakenElement<T> tryPop() {
-		while (true) {
-			final MultiStackHead<T> original = swapMultiHead(h -> {
-				if (h.ready != null) {
-					h.ready = h.ready.next;
+	private Stripe<T> homeStripe() {
+		if (stripes.length == 1) {
+			return stripes[0];
+		}
+		final long id = Thread.currentThread().getId();
+		final int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+	}
+
+	/**
+	 * Park an element in the current thread's affinity slot
+	 * @return false if the slot is unavailable and the element must be pushed
+	 */
+	private boolean park(final Local<T> local, final T e, final long lastUsed, final long lastTested) {
+		if (hasWaiting()) {
+			return false; // Hand it off to a waiting thread
+		}
+		if (!local.tryPark(e, lastUsed, lastTested)) {
+			return false;
+		}
+		// A thread may have started waiting before it could see the parked element
+		if (hasWaiting()) {
+			final T reclaimed = local.tryTake();
+			if (reclaimed != null) {
+				push(local, reclaimed, lastUsed, lastTested);
+			}
+		}
+		return true;
+	}
+
+	private Node<T> tryPop(final Stripe<T> stripe) {
+		final Node<T> n = stripe.ready.pop(nodes);
+		if (n != null) {
+			readyCount.decrement();
+		}
+		return n;
+	}
+
+	/**
+	 * Take a ready element from a stripe's slots or stack
+	 */
+	private Node<T> tryPopReady(final Local<T> local, final Stripe<T> stripe) {
+		if (stripe.slots != null) {
+			final int i = stripe.slots.poll();
+			if (i >= 0) {
+				readyCount.decrement();
+				final long lastUsed = stripe.slots.lastUsed(i);
+				final long lastTested = stripe.slots.lastTested(i);
+				return fill(local, stripe.slots.take(i), lastUsed, lastTested);
+			}
+		}
+		return tryPop(stripe);
+	}
+
+	/**
+	 * Take a ready element from another stripe or a parked slot
+	 */
+	private Node<T> stealReady(final Local<T> local, final Stripe<T> home) {
+		for (final Stripe<T> stripe : stripes) {
+			if (stripe != home) {
+				final Node<T> n = tryPopReady(local, stripe);
+				if (n != null) {
+					return n;
 				}
-			});
+			}
+		}
+		return threadAffinity ? stealParked(local) : null;
+	}
 
-			if (original.ready != null) {
-				final T e = original.ready.tryTake();
+	private Node<T> tryPopAny(final Local<T> local) {
+		for (final Stripe<T> stripe : stripes) {
+			final Node<T> n = tryPopReady(local, stripe);
+			if (n != null) {
+				return n;
+			}
+		}
+		return threadAffinity ? stealParked(local) : null;
+	}
+
+	private Node<T> stealParked(final Local<T> local) {
+		for (Local<T> l = localChain.get(); l != null; l = l.next) {
+			if (l.isOccupied()) {
+				final long lastUsed = l.lastUsed;
+				final long lastTested = l.lastTested;
+				final T e = l.trySteal();
 				if (e != null) {
-					return new TakenElement<>(e, original.ready.lastUsed, original.ready.lastTested);
+					return fill(local, e, lastUsed, lastTested);
 				}
-			} else {
-				return null;
 			}
 		}
+		return null;
+	}
+	
+	private Local<T> registerLocal() {
+		final Local<T> l = new Local<>(Thread.currentThread(), readyCount);
+		localChain.getAndUpdate(old -> {
+			l.next = old;
+			return l;
+		});
+		sweep(SWEEP_STEPS);
+		return l;
+	}
+
+	/**
+	 * Unlink the records of dead threads, a few at a time, continuing where the last sweep stopped.
+	 * New threads pay for the ones that went before so the chain stays near the number of live threads.
+	 * Only one thread sweeps at a time.  The others skip it.
+	 */
+	private void sweep(final int steps) {
+		if (!sweeping.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			Local<T> prev = sweepPrev;
+			for (int i = 0; i < steps; ++i) {
+				if (prev == null) {
+					prev = localChain.get(); // The head stays because it's the target of CAS inserts
+					if (prev == null) {
+						break;
+					}
+				}
+				final Local<T> l = prev.next;
+				if (l == null) {
+					prev = null; // Start over
+				} else if (l.isDead() && !l.isOccupied()) {
+					reclaim(l);
+					prev.next = l.next;
+				} else {
+					prev = l;
+				}
+			}
+			sweepPrev = prev;
+		} finally {
+			sweeping.set(false);
+		}
+	}
+
+	/**
+	 * @return Number of thread records, for testing
+	 */
+	int countLocals() {
+		int count = 0;
+		for (Local<T> l = localChain.get(); l != null; l = l.next) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return Number of Node and Waiting records ever created, for testing
+	 */
+	int countRecords() {
+		return nodes.size() + waiters.size();
+	}
+
+	/**
+	 * @return A detached Node holding the element, preferring the thread's spare
+	 */
+	private Node<T> fill(final Local<T> local, final T e, final long lastUsed, final long lastTested) {
+		Node<T> n = local.spare;
+		if (n != null) {
+			local.spare = null;
+		} else {
+			n = freeNodes.pop(nodes);
+			if (n == null) {
+				n = nodes.create(Node::new);
+			}
+		}
+		n.lastUsed = lastUsed;
+		n.lastTested = lastTested;
+		n.put(e);
+		return n;
+	}
+
+	/**
+	 * Take the element out of a detached Node and recycle the Node
+	 */
+	private T take(final Local<T> local, final Node<T> n) {
+		final T e = n.take();
+		recycle(local, n);
+		return e;
+	}
+
+	private void recycle(final Local<T> local, final Node<T> n) {
+		if (local.spare == null) {
+			local.spare = n;
+		} else {
+			freeNodes.push(n);
+		}
+	}
+
+	private Waiting<T> acquireWaiting(final Local<T> local) {
+		Waiting<T> w = local.waiting;
+		if ((w == null) || !w.tryReuse()) {
+			// Still linked from an earlier wait.  Whoever unlinks it will recycle it.
+			w = freeWaiters.pop(waiters);
+			if (w == null) {
+				w = waiters.create(Waiting::new);
+			}
+			local.waiting = w;
+		}
+		w.prepare(Thread.currentThread());
+		return w;
+	}
+
+	private void release(final Waiting<T> w) {
+		if (w.unlink()) {
+			w.parked = null; // Don't keep a thread that may have ended
+			w.forget();
+			freeWaiters.push(w);
+		}
 	}
 	
 	private void sendBackAsync(final T e) {
-		EXEC.execute(() -> sendBack(e));
+		closing.execute(() -> sendBack(e));
 	}
 
 	private void sendBack(final T e) {
@@ -343,40 +1463,87 @@ public class Pool<T, ERR extends Exception> {
 		}
 	}
 
-	private void validateAsync(final T e, final long lastUsed) {
-		EXEC.execute(() -> {
+	/**
+	 * @param queue validating for idle elements or checkInValidating for returned ones
+	 */
+	private void validateAsync(final TaskQueue queue, final T e, final long lastUsed) {
+		queue.execute(() -> {
 			final long now = System.currentTimeMillis();
 			if (validate(e)) {
-				push(e, lastUsed, now);
+				push(e, lastUsed, jitter(now));
 			} else {
 				sendBack(e);
 			}
+			if (validationBacklog) {
+				validationBacklog = false;
+				servicing.request(this);
+			}
 		});
 	}
 
 	private boolean validate(final T e) {
+		final long start = System.nanoTime();
+		boolean valid = false;
 		try {
-			return source.validate(e);
+			valid = source.validate(e);
 		} catch (final Exception err) {
 			log.warn("Failed to validate", err);
-			return false;
+		} finally {
+			final long took = System.nanoTime() - start;
+			validationNanos.add(took);
+			validateTime.record(took);
+			if (listener != null) {
+				listener.onValidate(this, took, valid);
+			}
+			validations.increment();
+			if (!valid) {
+				validationFailures.increment();
+			}
 		}
+		return valid;
+	}
+
+	/**
+	 * @return Test time moved back by a random part of validateJitterPercent so that retests spread out
+	 */
+	private long jitter(final long tested) {
+		final long range = ((long) settings.validateInterval * settings.validateJitterPercent) / 100;
+		return (range > 0) ? tested - ThreadLocalRandom.current().nextLong(range) : tested;
 	}
 
 	private void createAsync() {
-		EXEC.execute(() -> create());
+		creating.execute(() -> create());
 	}
 
-	private void create() {
+	/**
+	 * @return null on success, otherwise the failure
+	 */
+	private Exception create() {
+		Exception failure = null;
 		try {
 			final long now = System.currentTimeMillis();
-			final T e = source.get();
+			final long start = System.nanoTime();
+			final T e;
+			try {
+				e = source.get();
+			} catch (final Exception err) {
+				if (listener != null) {
+					listener.onCreateFailure(this, System.nanoTime() - start, err);
+				}
+				throw err;
+			}
+			final long took = System.nanoTime() - start;
+			createTime.record(took);
+			if (listener != null) {
+				listener.onCreate(this, took);
+			}
 			tracker.add(e);
 			if (running) {
 				currentFailure = null;
 			}
-			push(e, now, now);
+			push(e, now, jitter(now));
 		} catch (final Exception err) {
+			failure = err;
 			if (running) {
 				currentFailure = err;
 				log.warn("Failed to create", err);
@@ -384,23 +1551,33 @@ public class Pool<T, ERR extends Exception> {
 		} finally {
 			pendingOpen.updateAndGet(c -> ((c > 0) ? c - 1 : 0));
 		}
-		SERVICING.request(this); // There may be more waiting but there was a concurrency throttle
+		servicing.request(this); // There may be more waiting but there was a concurrency throttle
+		return failure;
 	}
 
 	private long cleanUpForQuit() {
 		//running must already be false
-		TakenElement<T> e;
-		while ((e = tryPop()) != null) {
-			sendBackAsync(e.element);
+		final Local<T> local = locals.get();
+		Node<T> n;
+		while ((n = tryPopAny(local)) != null) {
+			final T e = take(local, n);
+			if (e != null) {
+				sendBackAsync(e);
+			}
+		}
+		while ((n = stealParked(local)) != null) {
+			sendBackAsync(take(local, n));
 		}
 
-		final MultiStackHead<T> original = swapMultiHead(h -> {
-			h.waiting = null;
-		});
-		Waiting<T> w = original.waiting;
-		while (w != null) {
-			w.abort();
-			w = w.next;
+		for (final Stripe<T> stripe : stripes) {
+			for (final IndexStack<Waiting<T>> lane : stripe.waiting) {
+				for (int i = lane.popAll(); i >= 0;) {
+					final Waiting<T> w = waiters.get(i);
+					i = w.next;
+					w.abort(shutDownFailure());
+					release(w);
+				}
+			}
 		}
 
 		if (tracker.isEmtpy()) {
@@ -443,10 +1620,62 @@ public class Pool<T, ERR extends Exception> {
 				} else {
 					log.warn("Leak at {}", Instant.ofEpochMilli(time));
 				}
+				if (listener != null) {
+					listener.onLeak(this, ObjectTracker.toTaker(ref));
+				}
 			}
 		}
 	}
 
+	/**
+	 * Look for checkouts older than leakSuspectMillis, a bounded batch per pass
+	 * @return Time until the next batch, or -1 for off
+	 */
+	//For service thread
+	private long scanForLeaks() {
+		final long threshold = settings.leakSuspectMillis;
+		if ((threshold <= 0) || tracker.isEmtpy()) {
+			return -1;
+		}
+		final long now = System.currentTimeMillis();
+		if ((leakScanCursor == 0) && (now < nextLeakScan)) {
+			return nextLeakScan - now;
+		}
+		leakScanTime = now;
+		leakScanCursor = tracker.scan(leakScanCursor, LEAK_SCAN_BATCH, leakSuspect);
+		if (leakScanCursor != 0) {
+			return 1; // More to do after other Pools have a turn
+		}
+		nextLeakScan = now + Math.max(100, threshold / 4);
+		return nextLeakScan - now;
+	}
+
+	//For service thread
+	private void suspect(final ObjectTracker.TraceRef<T> ref) {
+		final Thread thread = ref.getThread();
+		if (thread == null) {
+			return; // Idle
+		}
+		final long held = leakScanTime - ref.getTime();
+		if ((held < settings.leakSuspectMillis) || !ref.suspect()) {
+			return;
+		}
+		suspectedLeaks.increment();
+		lastLeakTime = leakScanTime;
+		if (settings.leakTracing == LeakTracing.AUTO) {
+			showLeaks = true;
+		}
+		final Throwable t = ref.getTrace();
+		if (t != null) {
+			log.warn("Possible leak: taken {}ms ago by {}", held, thread, t);
+		} else {
+			log.warn("Possible leak: taken {}ms ago by {}", held, thread);
+		}
+		if (listener != null) {
+			listener.onSuspectedLeak(this, ObjectTracker.toTaker(ref), held);
+		}
+	}
+
 	//For service thread
 	private long populate() {
 		final long maxWait = Math.min(settings.maxIdleMillis, settings.validateInterval);
@@ -455,7 +1684,7 @@ public class Pool<T, ERR extends Exception> {
 				openingThrottled = false; // Do this before counting to make race condition safe
 				
 				final int opening = pendingOpen.get();
-				if (!overCount(head.get().waiting, opening)) {
+				if (!waitingOverCount(opening) && ((opening + tracker.count()) >= settings.minIdle)) {
 					return tracker.isEmtpy() ? -1 : maxWait;
 				}
 				
@@ -465,7 +1694,7 @@ public class Pool<T, ERR extends Exception> {
 				if ((currentFailure == null) || (errWaitTime < 0)) {
 					if (opening < settings.openConcurrent) {
 						final int approxTotal = opening + tracker.count();
-						if (approxTotal < settings.maxOpen) {
+						if (approxTotal < getLimit()) {
 							// Can open more
 							if (pendingOpen.compareAndSet(opening, opening + 1)) {
 								createAsync();
@@ -519,20 +1748,49 @@ public class Pool<T, ERR extends Exception> {
 		final long retestTime = now - settings.validateInterval;
 		final long idleTime = now - settings.maxIdleMillis;
 		long nextService= Math.max(settings.maxIdleMillis, settings.validateInterval);
+		final Local<T> local = locals.get();
+		evictable = tracker.count() - settings.minIdle;
+		validationBacklog = false;
+		
+		if (threadAffinity) {
+			nextService= Math.min(nextService, parkedValidations(idleTime, retestTime));
+		}
+		sweep(SERVICE_SWEEP_STEPS);
+		for (final Stripe<T> stripe : stripes) {
+			nextService= Math.min(nextService, idleValidations(local, stripe, idleTime, retestTime));
+		}
+		if (validationBacklog && !validating.isBusy()) {
+			return 0; // The pipeline drained while this was running
+		}
+		return nextService;
+	}
+
+	//For service thread
+	private long idleValidations(final Local<T> local, final Stripe<T> stripe, final long idleTime, final long retestTime) {
+		long nextService= (stripe.slots != null) ? slotValidations(local, stripe.slots, idleTime, retestTime) : Long.MAX_VALUE;
 
-		TakenElement<T> top;
+		Node<T> top;
 		do {
 			// Take a valid element out of the pool's head that can be used as a substitute for expired/bad items later in the list.
-			while ((top = tryPop()) != null) {
-				// Can't modify the ready structure except the head but the contents of the link can be swapped.
-				// Pop a link off the head and use it as a replacement.
+			while ((top = tryPop(stripe)) != null) {
+				// Can't modify the ready structure except the head but the contents of the node can be swapped.
+				// Pop a node off the head and use it as a replacement.
 				// It's possible that the head is also in need of work
-				if (top.lastUsed <= idleTime) {
-					sendBackAsync (top.element);
+				final T e = top.element;
+				if (e == null) {
+					recycle(local, top);
+				} else if ((top.lastUsed <= idleTime) && (evictable > 0)) {
+					evictable--;
+					evicted(top.lastUsed);
+					sendBackAsync (take(local, top));
+				} else if ((top.lastTested <= retestTime) && !validating.isBusy()) {
+					final long lastUsed = top.lastUsed;
+					validateAsync(validating, take(local, top), lastUsed);
 				} else if (top.lastTested <= retestTime) {
-					validateAsync(top.element, top.lastUsed);
+					validationBacklog = true; // Usable meanwhile.  A finishing validation requests service.
+					break;
 				} else {
-					nextService= Math.min(nextService, Math.min(top.lastUsed - idleTime, top.lastTested - retestTime));
+					nextService= Math.min(nextService, untilDue(top.lastUsed, top.lastTested, idleTime, retestTime));
 					break; // Got a good one
 				}
 			}
@@ -542,137 +1800,315 @@ public class Pool<T, ERR extends Exception> {
 			}
 
 			// A good element was taken off the head.
-			// Examine the rest of the ready stack and swap contents if needed
-			final MultiStackHead<T> h = head.get();
-			Ready<T> r = (h != null) ? h.ready : null;
-			while (r != null) {
-				if (r.lastUsed <= idleTime) {
-					final TakenElement<T> old = r.trySwapValue(top.element, top.lastTested);
+			// Examine the rest of the ready stack and swap contents if needed.
+			// Nodes may be recycled during the walk so it's bounded.
+			int steps= nodes.size();
+			for (int i = stripe.ready.peek(); (i >= 0) && (steps-- > 0);) {
+				final Node<T> r = nodes.get(i);
+				if ((r.lastUsed <= idleTime) && (evictable > 0)) {
+					final TakenElement<T> old = r.trySwapValue(top.element, top.lastUsed, top.lastTested);
 					if (old != null) {
+						evictable--;
+						evicted(old.lastUsed);
 						sendBackAsync (old.element);
+						top.take();
+						recycle(local, top);
 						top = null; // Consumed for swap
 						break; // Need a new replacement off the top of the stack
 					}
+				} else if ((r.lastTested <= retestTime) && validating.isBusy()) {
+					validationBacklog = true;
 				} else if (r.lastTested <= retestTime) {
-					final TakenElement<T> old = r.trySwapValue(top.element, top.lastTested);
+					final TakenElement<T> old = r.trySwapValue(top.element, top.lastUsed, top.lastTested);
 					if (old != null) {
-						validateAsync(old.element, old.lastUsed);
+						validateAsync(validating, old.element, old.lastUsed);
+						top.take();
+						recycle(local, top);
 						top = null; // Consumed for swap
 						break; // Need a new replacement off the top of the stack
 					}
 				} else {
-					nextService= Math.min(nextService, Math.min(top.lastUsed - idleTime, top.lastTested - retestTime));
+					nextService= Math.min(nextService, untilDue(r.lastUsed, r.lastTested, idleTime, retestTime));
 				}
-				r = r.next;
+				i = r.next;
 			}
 		} while (top == null); // Null here means consumed for swap
 
 		// Put this back
 		if (top != null) {
-			push(top.element, top.lastUsed, top.lastTested);
+			pushTo(local, stripe, top);
+			settle(local);
 		}
 			
 		return nextService;
 	}
 
-	@FunctionalInterface
-	interface StackOperation<T> {
-		void apply(MultiStackHead<T> head);
+	//For service thread
+	private long slotValidations(final Local<T> local, final SlotArray<T> slots, final long idleTime, final long retestTime) {
+		long nextService= Long.MAX_VALUE;
+		boolean restored = false;
+		for (int i = slots.nextReady(0); i >= 0; i = slots.nextReady(i + 1)) {
+			// Times of an unclaimed slot are only a hint.  They're exact once claimed.
+			if (!isDue(slots.lastUsed(i), slots.lastTested(i), idleTime, retestTime)) {
+				nextService= Math.min(nextService, untilDue(slots.lastUsed(i), slots.lastTested(i), idleTime, retestTime));
+			} else if (((slots.lastUsed(i) > idleTime) || (evictable <= 0)) && validating.isBusy()) {
+				validationBacklog = true; // Usable meanwhile.  A finishing validation requests service.
+			} else if (slots.tryClaim(i)) {
+				final long lastUsed = slots.lastUsed(i);
+				final long lastTested = slots.lastTested(i);
+				if ((lastUsed <= idleTime) && (evictable > 0)) {
+					readyCount.decrement();
+					evictable--;
+					evicted(lastUsed);
+					sendBackAsync(slots.take(i));
+				} else if (lastTested <= retestTime) {
+					readyCount.decrement();
+					validateAsync(validating, slots.take(i), lastUsed);
+				} else {
+					// Replaced by a fresh element since the scan read it
+					slots.restore(i);
+					restored = true;
+				}
+			}
+		}
+		if (restored) {
+			settle(local);
+		}
+		return nextService;
 	}
 
-	private MultiStackHead<T> swapMultiHead(final StackOperation<T> operation) {
-		final MultiStackHead<T> to = new MultiStackHead<>();
-		MultiStackHead<T> from;
-		do {
-			from = head.get();
-			to.setFrom(from);
-			operation.apply(to);
-		} while (!head.compareAndSet(from, to));
-		return from;
+	private boolean isDue(final long lastUsed, final long lastTested, final long idleTime, final long retestTime) {
+		return ((lastUsed <= idleTime) && (evictable > 0)) || (lastTested <= retestTime);
 	}
-	
-	private int count (Link<?> e) {
-		int count= 0;
-		while (e != null) {
-			count++;
-			e= e.next;
+
+	private void evicted(final long lastUsed) {
+		if (listener != null) {
+			listener.onEvict(this, System.currentTimeMillis() - lastUsed);
 		}
-		return count;
 	}
-	
-	private <LINK extends Link<LINK>> int filteredCount (LINK e, Predicate<LINK> filter) {
-		int count= 0;
-		while (e != null) {
-			if (filter.test(e)) {
-				count++;
+
+	/**
+	 * @return Time until an element needs eviction or validation.  Eviction doesn't count if it's held for minIdle.
+	 */
+	private static long untilDue(final long lastUsed, final long lastTested, final long idleTime, final long retestTime) {
+		return Math.min((lastUsed > idleTime) ? lastUsed - idleTime : Long.MAX_VALUE, lastTested - retestTime);
+	}
+
+	//For service thread
+	private long parkedValidations(final long idleTime, final long retestTime) {
+		long nextService= Long.MAX_VALUE;
+		for (Local<T> l = localChain.get(); l != null; l = l.next) {
+			if (l.isOccupied()) {
+				final long lastUsed = l.lastUsed;
+				final long lastTested = l.lastTested;
+				if ((lastUsed <= idleTime) && (evictable > 0)) {
+					final T stolen = l.trySteal();
+					if (stolen != null) {
+						evictable--;
+						evicted(lastUsed);
+						sendBackAsync(stolen);
+					}
+				} else if ((lastTested <= retestTime) && validating.isBusy()) {
+					validationBacklog = true;
+				} else if (lastTested <= retestTime) {
+					final T stolen = l.trySteal();
+					if (stolen != null) {
+						validateAsync(validating, stolen, lastUsed);
+					}
+				} else if (l.isDead()) {
+					// The owner can't take it back.  Empty so the sweep can unlink it.
+					final T stolen = l.trySteal();
+					if (stolen != null) {
+						push(stolen, lastUsed, lastTested);
+					}
+				} else {
+					nextService= Math.min(nextService, untilDue(lastUsed, lastTested, idleTime, retestTime));
+				}
+			}
+		}
+		return nextService;
+	}
+
+	/**
+	 * Recycle the records held by a dead thread
+	 */
+	private void reclaim(final Local<T> l) {
+		final Node<T> n = l.spare;
+		if (n != null) {
+			l.spare = null;
+			freeNodes.push(n);
+		}
+		final Waiting<T> w = l.waiting;
+		if (w != null) {
+			l.waiting = null;
+			if (w.tryReuse()) {
+				w.parked = null;
+				freeWaiters.push(w);
 			}
-			e= e.next;
 		}
-		return count;
 	}
 	
+	//For service thread
+	private long adapt() {
+		if (adaptive == null) {
+			return -1;
+		}
+		final boolean waiting = hasWaiting();
+		final long nextService = adaptive.update(System.currentTimeMillis(), waiting);
+		// Elements already shed are still tracked until their close finishes.  Don't count them twice.
+		final int kept = tracker.count() - shedding.get();
+		excess.set(Math.max(0, Math.min((kept + pendingOpen.get()) - adaptive.limit(), kept - settings.minIdle)));
+		return (waiting || !tracker.isEmtpy()) ? nextService : -1;
+	}
+
 	/**
-	 * Maybe a bit faster than count for long lists. 
-	 * @param e
-	 * @param limit
-	 * @return true if the link is longer than the supplied limit 
+	 * @return true if a returned element should be closed because the adaptive limit dropped.  Decrement shedding once it's closed.
 	 */
-	private boolean overCount (Link<?> e, int limit) {
-		int c= 0;
-		while (e != null) {
-			c++;
-			if (c > limit) {
+	private boolean shed() {
+		int e;
+		while ((e = excess.get()) > 0) {
+			shedding.incrementAndGet(); // Before the claim so adapt() can't count it as kept
+			if (excess.compareAndSet(e, e - 1)) {
 				return true;
 			}
-			e= e.next;
+			shedding.decrementAndGet();
 		}
 		return false;
 	}
 
+	//For service thread
+	private long pruneWaiting() {
+		final long now = System.currentTimeMillis();
+		final Local<T> local = locals.get();
+		long nextService= -1;
+		for (final Stripe<T> stripe : stripes) {
+			for (final IndexStack<Waiting<T>> lane : stripe.waiting) {
+				// Detach so records can't be recycled during the walk
+				final int first = lane.popAll();
+				if (first < 0) {
+					continue;
+				}
+				for (int i = first; i >= 0;) {
+					final Waiting<T> w = waiters.get(i);
+					final CompletableFuture<T> f = w.future;
+					if ((f != null) && !f.isDone()) {
+						final long wait = w.deadline - now;
+						if (wait <= 0) {
+							final Exception err = currentFailure;
+							f.completeExceptionally((err != null) ? err : new TimeoutException());
+						} else if ((nextService < 0) || (wait < nextService)) {
+							nextService= wait;
+						}
+					}
+					i = w.next;
+				}
+				requeueAlive(lane, first);
+			}
+		}
+		settle(local);
+		return nextService;
+	}
+
+	/**
+	 * Maybe a bit faster than count for long lists. 
+	 * @param limit
+	 * @return true if the waiting stacks are longer than the supplied limit 
+	 */
+	private boolean waitingOverCount (int limit) {
+		return waitingCount.sum() > limit;
+	}
+
+	/**
+	 * One thread that services a shard of the Pools.  Pools wait in a deadline heap so a wakeup only
+	 * touches the pools that are due.
+	 */
 	static class Servicing {
 		private static final Logger log  = LoggerFactory.getLogger(Servicing.class);
-		private static final int maxIntervalMs = 10000;
-		
+		private static final long maxIntervalNanos = TimeUnit.SECONDS.toNanos(10);
+
+		private final String threadName;
+		private final int shard;
+
 		/**
 		 *  Marker that worker thread for serviceChain has exited.
 		 *  When serviceChain head is THREAD_QUIT_MARKER, the service thread needs starting.
 		 *  THREAD_QUIT_MARKER.next may temporarily have a value if the servicing thread dies
 		 *  abnormally.  The service thread will fix this.
 		 */
-		private static final ServiceLink THREAD_QUIT_MARKER = new ServiceLink(null);
+		private final ServiceLink THREAD_QUIT_MARKER = new ServiceLink(null);
 		
 		/**
 		 * A Linked List of pools to service.  The servicing thread will the entire list
-		 * for de-duplication and batch processing.
+		 * for batch processing.  A pool's link is in the list at most once.
 		 */
 		private final AtomicReference<ServiceLink> serviceChain = new AtomicReference<>(THREAD_QUIT_MARKER);
 		
 		private volatile Thread worker;
-		private final LinkedHashMap<Pool<?, ?>, Long> serviceSchedule = new LinkedHashMap<>();
-		private final LinkedHashSet<Pool<?, ?>> todo = new LinkedHashSet<>();
+		private final DeadlineHeap<Pool<?, ?>> serviceSchedule = new DeadlineHeap<>();
+		private final ArrayList<Pool<?, ?>> todo = new ArrayList<>();
+		// Metrics written only by the servicing thread
+		private volatile long passes = 0;
+		private volatile long services = 0;
+		private volatile long serviceNanos = 0;
+		private volatile long maxServiceNanos = 0;
+		private volatile long lagNanos = 0;
+		private volatile long maxLagNanos = 0;
+		private volatile int scheduled = 0;
 
+		/**
+		 * Each Pool owns one link.  It's pending from when it's pushed until the servicing thread takes it.
+		 */
 		static final class ServiceLink {
+			private static final AtomicIntegerFieldUpdater<ServiceLink> PENDING = AtomicIntegerFieldUpdater.newUpdater(ServiceLink.class, "pending");
 			ServiceLink next;
 			final Pool<?, ?> pool;
+			private volatile int pending = 0;
+			volatile long queued = 0; // Written only by the thread that set pending
 
 			public ServiceLink(final Pool<?, ?> pool) {
 				this.pool = pool;
 			}
 		}
 
-		Servicing() {
+		Servicing(final int shard, final String threadName) {
+			this.shard = shard;
+			this.threadName = threadName;
+		}
+
+		static Servicing[] createShards(final int count) {
+			final Servicing[] shards = new Servicing[Math.max(1, count)];
+			for (int i = 0; i < shards.length; ++i) {
+				shards[i] = new Servicing(i, (shards.length == 1) ? "Pool Servicing thread" : "Pool Servicing thread " + i);
+			}
+			return shards;
+		}
+
+		ServicingStats stats() {
+			return new ServicingStats(shard, scheduled, passes, services, serviceNanos, maxServiceNanos, lagNanos, maxLagNanos);
+		}
+
+		/**
+		 * @return Number of times the servicing thread woke up to do work
+		 */
+		long countPasses() {
+			return passes;
 		}
 
 		void request(final Pool<?, ?> p) {
-			final ServiceLink sl = new ServiceLink(p);
-			final ServiceLink original = serviceChain.getAndUpdate(old -> {
-				sl.next = old;
-				return sl;
-			});
+			final ServiceLink sl = p.serviceLink;
+			if (!ServiceLink.PENDING.compareAndSet(sl, 0, 1)) {
+				return; // Already in the list and the servicing thread has been woken
+			}
+			sl.queued++;
+			ServiceLink original;
+			do {
+				original = serviceChain.get();
+				sl.next = original;
+			} while (!serviceChain.compareAndSet(original, sl));
 
 			// Need to start worker if the top of linked list was the quit marker.
 			if (original == THREAD_QUIT_MARKER) {
-				worker = new Thread(this::run, "Pool Servicing thread");
+				worker = new Thread(this::run, threadName);
 				worker.start();
 			} else {
 				//This value may be stale (another thread creating worker) but that worker won't be parked.
@@ -688,41 +2124,66 @@ public class Pool<T, ERR extends Exception> {
 						//Gather all requests as a batch
 						ServiceLink sl = serviceChain.getAndSet(null);
 						if (sl != null) {
+							final long requested = System.nanoTime();
 							do {
+								final ServiceLink next = sl.next;
 								if (sl != THREAD_QUIT_MARKER) {
 									//Skip but keep going.  There's more if the previous worker had died.
-									todo.add(sl.pool);
+									sl.next = null;
+									ServiceLink.PENDING.set(sl, 0);
+									serviceSchedule.scheduleBy(sl.pool.serviceEntry, requested);
 								}
-							} while ((sl = sl.next) != null);
+								sl = next;
+							} while (sl != null);
 						}
 
-						final long now = System.currentTimeMillis();
-						for (final Map.Entry<Pool<?, ?>, Long> e : serviceSchedule.entrySet()) {
-							if (e.getValue().longValue() <= now) {
-								todo.add(e.getKey());
-							}
+						passes++;
+						long now = System.nanoTime();
+						Pool<?, ?> due;
+						while ((due = serviceSchedule.pollDue(now)) != null) {
+							todo.add(due);
 						}
-						
-						long sleep = maxIntervalMs;
-						
-						for (final Pool<?, ?> p : todo) {
-							final long wait = p.service();
+
+						for (int i = 0; i < todo.size(); ++i) {
+							final Pool<?, ?> p = todo.get(i);
+							final long start = System.nanoTime();
+							final long lag = start - p.serviceEntry.deadline; // Includes waiting behind other Pools in this pass
+							lagNanos += lag;
+							if (lag > maxLagNanos) {
+								maxLagNanos = lag;
+							}
+							long wait;
+							try {
+								wait = p.service();
+							} catch (final RuntimeException err) {
+								// Keep the thread alive for the other Pools.  Try this one again later.
+								p.log.error("Servicing failed", err);
+								wait = TimeUnit.NANOSECONDS.toMillis(maxIntervalNanos);
+							}
+							final long took = System.nanoTime() - start;
+							services++;
+							serviceNanos += took;
+							if (took > maxServiceNanos) {
+								maxServiceNanos = took;
+							}
 							if (wait >= 0) {
-								if (sleep > wait) {
-									sleep = wait;
-								}
-								serviceSchedule.put(p, Long.valueOf(now + wait));
+								serviceSchedule.schedule(p.serviceEntry, now + TimeUnit.MILLISECONDS.toNanos(wait));
 							} else {
-								serviceSchedule.remove(p);
+								serviceSchedule.remove(p.serviceEntry);
 							}
 						}
 						todo.clear();
-
-						if (sleep > 0) {
-							LockSupport.parkNanos(sleep);
-							if (Thread.interrupted()) {
-								log.warn("Pool Servicing thread interrupted while there's work to do.  This may glitch servicing.");
-								return;
+						scheduled = serviceSchedule.size();
+
+						if (!serviceSchedule.isEmpty()) {
+							now = System.nanoTime();
+							final long sleep = Math.min(serviceSchedule.nextDeadline() - now, maxIntervalNanos);
+							if (sleep > 0) {
+								LockSupport.parkNanos(sleep);
+								if (Thread.interrupted()) {
+									log.warn("Pool Servicing thread interrupted while there's work to do.  This may glitch servicing.");
+									return;
+								}
 							}
 						}
 					} while (!serviceSchedule.isEmpty());
@@ -743,30 +2204,137 @@ public class Pool<T, ERR extends Exception> {
 		}
 	}
 
-	abstract static class Link<T extends Link<T>> {
-		T next;
+
+	/**
+	 * A recycled record that's linked into an IndexStack by its index in a Registry
+	 */
+	abstract static class Indexed {
+		final int index;
+		int next = -1;
+
+		Indexed(final int index) {
+			this.index = index;
+		}
 	}
 
-	static final class Waiting<T> extends Link<Waiting<T>> {
+	static final class Waiting<T> extends Indexed {
 		private static final Object DEAD = new Object();
-		private final AtomicReference<Object> response = new AtomicReference<>();
-		final Thread parked;
+		private static final int LINKED = 1;
+		private static final int ABANDONED = 2;
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<Waiting, Object> RESPONSE = AtomicReferenceFieldUpdater.newUpdater(Waiting.class, Object.class, "response");
+		@SuppressWarnings("rawtypes")
+		private static final AtomicIntegerFieldUpdater<Waiting> FLAGS = AtomicIntegerFieldUpdater.newUpdater(Waiting.class, "flags");
+		private volatile Object response = DEAD;
+		private volatile int flags;
+		Thread parked;
+		volatile CompletableFuture<T> future;
+		Thread caller; // Asked for the future
+		CallSiteProfile.Site site; // Of the future's caller
+		ObjectTracker.Trace trace; // Of the future's caller
+		long deadline;
+		long since; // System.nanoTime() when the wait started
+
+		Waiting(final int index) {
+			super(index);
+		}
+
+		/**
+		 * Ready for another wait.  Must be linked into a waiting stack right after.
+		 */
+		void prepare(final Thread thread) {
+			since = System.nanoTime();
+			parked = thread;
+			forget();
+			flags = LINKED;
+			response = null;
+		}
+
+		/**
+		 * Ready for an asynchronous wait.  No thread owns it so whoever unlinks it recycles it.
+		 * @param caller Thread that asked, for checking out in its name
+		 * @param site Call site of the caller, or null
+		 * @param trace Trace of the caller, or null
+		 */
+		void prepare(final CompletableFuture<T> future, final long deadline, final Thread caller, final CallSiteProfile.Site site, final ObjectTracker.Trace trace) {
+			since = System.nanoTime();
+			parked = null;
+			this.deadline = deadline;
+			this.future = future;
+			this.caller = caller;
+			this.site = site;
+			this.trace = trace;
+			flags = LINKED | ABANDONED;
+			response = null;
+		}
+
+		/**
+		 * Drop the asynchronous caller's details so a recycled record doesn't keep them.
+		 * That includes the future, which holds its element and the caller's callbacks.
+		 */
+		void forget() {
+			future = null;
+			caller = null;
+			site = null;
+			trace = null;
+		}
+
+		/**
+		 * @return true if it's not in a stack.  Otherwise it's marked so whoever unlinks it recycles it.
+		 */
+		boolean tryReuse() {
+			int f;
+			while ((f = flags) != 0) {
+				if (FLAGS.compareAndSet(this, f, f | ABANDONED)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @return true if the owner abandoned it and the caller must recycle it
+		 */
+		boolean unlink() {
+			int f;
+			do {
+				f = flags;
+			} while (!FLAGS.compareAndSet(this, f, 0));
+			return (f & ABANDONED) != 0;
+		}
 
-		public Waiting(final Thread parked) {
-			this.parked = parked;
+		/**
+		 * Give the element to a parked thread without waking it yet
+		 */
+		boolean tryClaim(final T element) {
+			return RESPONSE.compareAndSet(this, null, element);
+		}
+
+		void wake() {
+			LockSupport.unpark(parked);
 		}
 
 		boolean tryRespond(final T element) {
-			if (response.compareAndSet(null, element)) {
-				LockSupport.unpark(parked);
-				return true;
+			if (RESPONSE.compareAndSet(this, null, element)) {
+				final CompletableFuture<T> f = future;
+				if (f == null) {
+					LockSupport.unpark(parked);
+					return true;
+				}
+				response = DEAD; // Don't hold the element while recycled
+				return f.complete(element); // False if it expired or was cancelled
 			}
 			return false;
 		}
 
-		void abort() {
-			if (response.compareAndSet(null, DEAD)) {
-				LockSupport.unpark(parked);
+		void abort(final Exception cause) {
+			if (RESPONSE.compareAndSet(this, null, DEAD)) {
+				final CompletableFuture<T> f = future;
+				if (f == null) {
+					LockSupport.unpark(parked);
+				} else {
+					f.completeExceptionally(cause);
+				}
 			}
 		}
 
@@ -774,14 +2342,14 @@ public class Pool<T, ERR extends Exception> {
 		T get(final long maxWait) {
 			final Object element;
 			try {
-				if ((response.get() == null) && (maxWait > 0)) {
-					final long deadline = System.currentTimeMillis() + maxWait;
+				if ((response == null) && (maxWait > 0)) {
+					final long deadline = deadlineMillis(maxWait);
 					do {
 						LockSupport.parkUntil(deadline);
-					} while ((response.get() == null) && (System.currentTimeMillis() < deadline) && !Thread.interrupted());
+					} while ((response == null) && (System.currentTimeMillis() < deadline) && !Thread.interrupted());
 				}
 			} finally {
-				element = response.getAndSet(DEAD);
+				element = RESPONSE.getAndSet(this, DEAD);
 			}
 			if ((element != null) && (element != DEAD)) {
 				return (T) element;
@@ -791,15 +2359,12 @@ public class Pool<T, ERR extends Exception> {
 		}
 
 		boolean isAlive() {
-			return response.get() == null;
-		}
-		
-		boolean isDead() {
-			return response.get() != null;
+			final CompletableFuture<T> f = future;
+			return (response == null) && ((f == null) || !f.isDone());
 		}
 	}
 
-	static final class TakenElement<T> extends Link<TakenElement<T>> {
+	static final class TakenElement<T> {
 		final T element;
 		final long lastUsed;
 		long lastTested;
@@ -812,29 +2377,34 @@ public class Pool<T, ERR extends Exception> {
 
 	}
 
-	static final class Ready<T> extends Link<Ready<T>> {
-		private final AtomicReference<T> element;
+	static final class Node<T> extends Indexed {
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<Node, Object> ELEMENT = AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "element");
+		volatile T element;
 		long lastUsed;
 		long lastTested;
 
-		public Ready(final T e, final long lastUsed, final long lastTested) {
-			this.element = new AtomicReference<>(e);
-			this.lastUsed = lastUsed;
-			this.lastTested = lastTested;
+		Node(final int index) {
+			super(index);
 		}
 
-		T tryTake() {
-			return element.getAndSet(null);
+		void put(final T e) {
+			element = e;
 		}
 
-		boolean isStillAvailable() {
-			return element.get() != null;
+		@SuppressWarnings("unchecked")
+		T take() {
+			return (T) ELEMENT.getAndSet(this, null);
 		}
 
-		TakenElement<T> trySwapValue(final T newValue, final long newLastTested) {
-			final T old = element.get();
-			if ((old != null) && element.compareAndSet(old, newValue)) {
+		/**
+		 * For the service thread only
+		 */
+		TakenElement<T> trySwapValue(final T newValue, final long newLastUsed, final long newLastTested) {
+			final T old = element;
+			if ((old != null) && ELEMENT.compareAndSet(this, old, newValue)) {
 				final TakenElement<T> re = new TakenElement<>(old, lastUsed, lastTested);
+				lastUsed = newLastUsed;
 				lastTested = newLastTested;
 				return re;
 			}
@@ -843,21 +2413,230 @@ public class Pool<T, ERR extends Exception> {
 	}
 
 	/**
-	 * MultiStackHead supports atomic conditional stack operations on two stacks at once.
-	 * Links may be truncated of dead objects but the middle structure (next links) must never be altered.
+	 * One thread's private state.  The slot holds its last returned element when thread affinity is on.
+	 * Only the owner parks.  Anyone may steal.  The spare Node and Waiting record are for the owner only.
+	 * The owner is weakly held so that an ended thread, virtual ones included, can be collected before
+	 * its record is unlinked.
 	 */
-	static final class MultiStackHead<T> {
+	static final class Local<T> {
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<Local, Object> ELEMENT = AtomicReferenceFieldUpdater.newUpdater(Local.class, Object.class, "element");
+		private volatile T element;
+		private final WeakReference<Thread> owner;
+		volatile long lastUsed;
+		volatile long lastTested;
+		Local<T> next;
+		long waitNanos; // Owner's last wait in get(), for the call site profile
+		Node<T> spare;
 		Waiting<T> waiting;
-		Ready<T> ready;
+		private final LongAdder readyCount;
 
-		void setFrom(final MultiStackHead<T> other) {
-			if (other != null) {
-				waiting = other.waiting;
-				ready = other.ready;
-			} else {
-				waiting = null;
-				ready = null;
+		Local(final Thread owner, final LongAdder readyCount) {
+			this.owner = new WeakReference<>(owner);
+			this.readyCount = readyCount;
+		}
+
+		boolean tryPark(final T e, final long lastUsed, final long lastTested) {
+			if (element != null) {
+				return false;
+			}
+			this.lastUsed = lastUsed;
+			this.lastTested = lastTested;
+			readyCount.increment();
+			if (ELEMENT.compareAndSet(this, null, e)) {
+				return true;
+			}
+			readyCount.decrement();
+			return false;
+		}
+
+		@SuppressWarnings("unchecked")
+		T tryTake() {
+			final T e = (element != null) ? (T) ELEMENT.getAndSet(this, null) : null;
+			if (e != null) {
+				readyCount.decrement();
+			}
+			return e;
+		}
+
+		T trySteal() {
+			final T e = element;
+			if ((e != null) && ELEMENT.compareAndSet(this, e, null)) {
+				readyCount.decrement();
+				return e;
+			}
+			return null;
+		}
+
+		boolean isOccupied() {
+			return element != null;
+		}
+
+		/**
+		 * @return true if the owner is gone and can't use this again
+		 */
+		boolean isDead() {
+			final Thread t = owner.get();
+			return (t == null) || !t.isAlive();
+		}
+	}
+
+	/**
+	 * One stripe of the pool.  There's a waiting stack for each Priority, highest first.
+	 */
+	static final class Stripe<T> {
+		final IndexStack<Node<T>> ready = new IndexStack<>();
+		final SlotArray<T> slots; // Null when idle elements are only in the stack
+		final IndexStack<Waiting<T>>[] waiting;
+
+		@SuppressWarnings("unchecked")
+		Stripe(final int slotCount) {
+			slots = (slotCount > 0) ? new SlotArray<>(slotCount) : null;
+			waiting = (IndexStack<Waiting<T>>[]) new IndexStack<?>[Priority.values().length];
+			for (int i = 0; i < waiting.length; ++i) {
+				waiting[i] = new IndexStack<>();
+			}
+		}
+
+		boolean hasWaiting() {
+			for (final IndexStack<Waiting<T>> lane : waiting) {
+				if (!lane.isEmpty()) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Treiber stack of Indexed records.  The head holds a stamp in the upper 32 bits and index+1 in the lower 32 bits.
+	 * The stamp changes on every update so a record that was popped and pushed again doesn't pass for the one that was read.
+	 */
+	static final class IndexStack<R extends Indexed> extends IndexStackHead {
+		long q0, q1, q2, q3, q4, q5, q6, q7;
+
+		private static long stamp(final long h, final int index) {
+			return (((h >>> 32) + 1) << 32) | ((index + 1) & 0xFFFFFFFFL);
+		}
+
+		private static int index(final long h) {
+			return (int) h - 1;
+		}
+
+		boolean isEmpty() {
+			return (int) head == 0;
+		}
+
+		/**
+		 * @return Index of the top record or -1
+		 */
+		int peek() {
+			return index(head);
+		}
+
+		void push(final R r) {
+			long h;
+			do {
+				h = head;
+				r.next = index(h);
+			} while (!HEAD.compareAndSet(this, h, stamp(h, r.index)));
+		}
+
+		R pop(final Registry<R> registry) {
+			while (true) {
+				final long h = head;
+				final int i = index(h);
+				if (i < 0) {
+					return null;
+				}
+				final R r = registry.get(i);
+				if (HEAD.compareAndSet(this, h, stamp(h, r.next))) {
+					return r;
+				}
+			}
+		}
+
+		/**
+		 * Detach the whole stack
+		 * @return Index of the first record or -1
+		 */
+		int popAll() {
+			long h;
+			do {
+				h = head;
+				if ((int) h == 0) {
+					return -1;
+				}
+			} while (!HEAD.compareAndSet(this, h, stamp(h, -1)));
+			return index(h);
+		}
+
+		/**
+		 * Put a privately held chain back under anything pushed since it was detached
+		 */
+		void pushUnder(final Registry<R> registry, R first, final R last) {
+			while (true) {
+				final long h = head;
+				if ((int) h == 0) {
+					last.next = -1;
+					if (HEAD.compareAndSet(this, h, stamp(h, first.index))) {
+						return;
+					}
+				} else if (HEAD.compareAndSet(this, h, stamp(h, -1))) {
+					// Take the newcomers and put them on top
+					R tail = registry.get(index(h));
+					while (tail.next >= 0) {
+						tail = registry.get(tail.next);
+					}
+					tail.next = first.index;
+					first = registry.get(index(h));
+				}
+			}
+		}
+	}
+
+	static class IndexStackHead extends IndexStackPadding {
+		static final AtomicLongFieldUpdater<IndexStackHead> HEAD = AtomicLongFieldUpdater.newUpdater(IndexStackHead.class, "head");
+		volatile long head;
+	}
+
+	static class IndexStackPadding {
+		long p0, p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	/**
+	 * Append-only table of recycled records so they can be linked by index
+	 */
+	static final class Registry<R> {
+		private static final int CHUNK_BITS = 10;
+		private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+		private static final int CHUNKS = 2048;
+		private final AtomicReferenceArray<AtomicReferenceArray<R>> chunks = new AtomicReferenceArray<>(CHUNKS);
+		private final AtomicInteger count = new AtomicInteger();
+
+		R create(final IntFunction<R> factory) {
+			final int index = count.getAndIncrement();
+			final int c = index >>> CHUNK_BITS;
+			if (c >= CHUNKS) {
+				count.decrementAndGet();
+				throw new IllegalStateException("Too many pool records");
+			}
+			AtomicReferenceArray<R> chunk = chunks.get(c);
+			if (chunk == null) {
+				chunks.compareAndSet(c, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+				chunk = chunks.get(c);
 			}
+			final R r = factory.apply(index);
+			chunk.set(index & (CHUNK_SIZE - 1), r);
+			return r;
+		}
+
+		R get(final int index) {
+			return chunks.get(index >>> CHUNK_BITS).get(index & (CHUNK_SIZE - 1));
+		}
+
+		int size() {
+			return Math.min(count.get(), CHUNKS * CHUNK_SIZE);
 		}
 	}
 }
@@ -0,0 +1,66 @@
+package us.pixelmemory.pool;
+
+/**
+ * Hooks for metrics backends such as Dropwizard Metrics, Micrometer, or JFR events.
+ * Methods are called on the thread that caused the event, often the caller of get() or takeBack() or
+ * the servicing thread, so they must be fast and must not block.  Override only what's needed.
+ * A Pool without a listener skips the calls entirely.
+ * Exceptions thrown by a listener are logged and otherwise ignored.
+ */
+public interface PoolListener {
+	/**
+	 * An element was taken from the Pool
+	 * @param waitNanos Time spent waiting, 0 if one was ready
+	 */
+	default void onAcquire(final Pool<?, ?> pool, final long waitNanos) {
+	}
+
+	/**
+	 * A returned or new element went directly to a waiting caller
+	 * @param waitNanos Time the caller had waited
+	 */
+	default void onHandOff(final Pool<?, ?> pool, final long waitNanos) {
+	}
+
+	/**
+	 * A get(), getMany() or getAsync() gave up with a TimeoutException
+	 */
+	default void onTimeout(final Pool<?, ?> pool, final long waitNanos) {
+	}
+
+	default void onCreate(final Pool<?, ?> pool, final long createNanos) {
+	}
+
+	default void onCreateFailure(final Pool<?, ?> pool, final long createNanos, final Exception err) {
+	}
+
+	default void onValidate(final Pool<?, ?> pool, final long validateNanos, final boolean valid) {
+	}
+
+	/**
+	 * An idle element was closed
+	 * @param idleMillis Time since it was last used
+	 */
+	default void onEvict(final Pool<?, ?> pool, final long idleMillis) {
+	}
+
+	/**
+	 * An element was held longer than warnLongUseMillis
+	 */
+	default void onLongUse(final Pool<?, ?> pool, final long useMillis) {
+	}
+
+	/**
+	 * An element was garbage collected without being returned
+	 * @param taker Where it was taken, with a stack trace if leak tracing was on
+	 */
+	default void onLeak(final Pool<?, ?> pool, final Taker taker) {
+	}
+
+	/**
+	 * An element has been checked out longer than leakSuspectMillis.  Called once per checkout.
+	 * @param heldMillis Time since it was taken
+	 */
+	default void onSuspectedLeak(final Pool<?, ?> pool, final Taker taker, final long heldMillis) {
+	}
+}
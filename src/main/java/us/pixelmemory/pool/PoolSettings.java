@@ -1,5 +1,8 @@
 package us.pixelmemory.pool;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class PoolSettings {
 	public enum LeakTracing {
 		/**
@@ -26,11 +29,30 @@ public class PoolSettings {
 	/** Maximum number that may open */
 	int maxOpen;
 
+	/**
+	 * How many idle validations may run concurrently.  More wait in a queue.
+	 * Idle validation leaves stale connections in the pool, still usable, while this many are queued or running.
+	 * Validations at check-in don't wait behind these because callers may be waiting for the element.
+	 */
+	int validateConcurrent= 4;
+
+	/** How many closes may run concurrently.  More wait in a queue so a hung database can't take every thread. */
+	int closeConcurrent= 4;
+
 	/** How long an extra connection may be idle before it is removed from the pool */
 	long maxIdleMillis;
+
+	/** Number of connections kept open even when idle.  Pool.warmUp() opens these in parallel. */
+	int minIdle= 0;
 	/** How long a connection may be in idle or out of the pool before it should be validated */
 	int validateInterval;
 
+	/**
+	 * Retest up to this percent of validateInterval early, at random, so that connections opened or
+	 * validated together don't all come due together.
+	 */
+	int validateJitterPercent= 10;
+
 	/** Connections used for this long will activate leaks checking and log */
 	long warnLongUseMillis;
 
@@ -51,12 +73,75 @@ public class PoolSettings {
 	 * when an item is taken from the pool .
 	 */
 	LeakTracing leakTracing= LeakTracing.AUTO;
+
+	/**
+	 * While leak tracing is on, capture a trace for 1 in this many checkouts.  1 traces every checkout.
+	 * A leak at a busy call site is still caught quickly when sampled.
+	 * The call site profile samples at the same rate.
+	 */
+	int leakTraceSampling= 1;
+
+	/** Most stack frames kept in a leak trace, starting at the Pool's caller */
+	int leakTraceDepth= 64;
+
+	/**
+	 * Report elements checked out longer than this as possible leaks without waiting for garbage collection.
+	 * They're logged and counted, and AUTO leak tracing turns on.  0 for off.
+	 */
+	long leakSuspectMillis= 0;
+
+	/**
+	 * Rank this many acquisition call sites by hold and wait time, or 0 for off.
+	 * 1 in leakTraceSampling checkouts then looks up its caller's stack frame.  It needs Java 9+ and is off on Java 8.
+	 */
+	int callSiteProfileSize= 0;
+
+	/**
+	 * Class names, or package prefixes ending in '.', that wrap the Pool.  Their frames are skipped like the
+	 * Pool's own so that leak traces and the call site profile show the wrapper's caller.
+	 */
+	List<String> skipFrames= new ArrayList<>();
 	
 	/**
 	 * Use first-in, first-out waiting for connections.
 	 * This is more fair but slows down with a large number of waiting threads
 	 */
 	boolean fifo= true;
+	
+	/**
+	 * Let each thread keep its most recently returned element in a private slot so that
+	 * a get/takeBack/get cycle on the same thread does not touch the shared stack.
+	 * Parked elements remain visible to waiting threads, idle validation, and counts.
+	 */
+	boolean threadAffinity= false;
+	
+	/**
+	 * Number of independent ready/waiting stacks, rounded up to a power of two.
+	 * More stripes reduce CAS contention with many threads but LIFO/FIFO order only holds within a stripe.
+	 */
+	int stripes= 1;
+
+	/**
+	 * Keep idle elements in a fixed array of maxOpen slots per stripe with a ready bitset instead of
+	 * linked stacks.  Idle validation becomes a linear scan.  Elements beyond maxOpen fall back to the stack.
+	 */
+	boolean slotArray= false;
+	
+	/**
+	 * Run create, validate, and close tasks on virtual threads when the JVM has them (Java 21+).
+	 * The shared pool of platform threads is used otherwise.
+	 */
+	boolean virtualThreads= false;
+	
+	/**
+	 * Open no more than an adaptive limit, bounded by maxOpen, that works like TCP congestion control.
+	 * The limit grows while callers wait and hold time stays near its long-term average.  It shrinks when
+	 * hold time rises because the database is slowing down.
+	 */
+	boolean adaptiveLimit= false;
+
+	/** Receives events for metrics, or null for none */
+	PoolListener listener= null;
 
 	public PoolSettings() {
 		// No-arg for beans
@@ -79,14 +164,29 @@ public class PoolSettings {
 	public PoolSettings(PoolSettings other) {
 		this.openConcurrent = other.openConcurrent;
 		this.maxOpen = other.maxOpen;
+		this.validateConcurrent = other.validateConcurrent;
+		this.closeConcurrent = other.closeConcurrent;
 		this.maxIdleMillis = other.maxIdleMillis;
+		this.minIdle = other.minIdle;
 		this.validateInterval = other.validateInterval;
+		this.validateJitterPercent = other.validateJitterPercent;
 		this.warnLongUseMillis = other.warnLongUseMillis;
 		this.giveUpMillis = other.giveUpMillis;
 		this.openBrokenRateMillis = other.openBrokenRateMillis;
 		this.giveUpBrokenMillis = other.giveUpBrokenMillis;
 		this.leakTracing = other.leakTracing;
+		this.leakTraceSampling = other.leakTraceSampling;
+		this.leakTraceDepth = other.leakTraceDepth;
+		this.leakSuspectMillis = other.leakSuspectMillis;
+		this.callSiteProfileSize = other.callSiteProfileSize;
+		this.skipFrames= new ArrayList<>(other.skipFrames);
 		this.fifo= other.fifo;
+		this.threadAffinity= other.threadAffinity;
+		this.stripes= other.stripes;
+		this.slotArray= other.slotArray;
+		this.virtualThreads= other.virtualThreads;
+		this.adaptiveLimit= other.adaptiveLimit;
+		this.listener= other.listener;
 	}
 
 	public int getOpenConcurrent() {
@@ -105,6 +205,22 @@ public class PoolSettings {
 		this.maxOpen = maxOpen;
 	}
 
+	public int getValidateConcurrent() {
+		return validateConcurrent;
+	}
+
+	public void setValidateConcurrent(final int validateConcurrent) {
+		this.validateConcurrent = validateConcurrent;
+	}
+
+	public int getCloseConcurrent() {
+		return closeConcurrent;
+	}
+
+	public void setCloseConcurrent(final int closeConcurrent) {
+		this.closeConcurrent = closeConcurrent;
+	}
+
 	public long getMaxIdleMillis() {
 		return maxIdleMillis;
 	}
@@ -113,6 +229,14 @@ public class PoolSettings {
 		this.maxIdleMillis = maxIdleMillis;
 	}
 
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	public void setMinIdle(final int minIdle) {
+		this.minIdle = minIdle;
+	}
+
 	public int getValidateInterval() {
 		return validateInterval;
 	}
@@ -121,6 +245,14 @@ public class PoolSettings {
 		this.validateInterval = validateInterval;
 	}
 
+	public int getValidateJitterPercent() {
+		return validateJitterPercent;
+	}
+
+	public void setValidateJitterPercent(final int validateJitterPercent) {
+		this.validateJitterPercent = validateJitterPercent;
+	}
+
 	public long getWarnLongUseMillis() {
 		return warnLongUseMillis;
 	}
@@ -160,8 +292,105 @@ public class PoolSettings {
 	public void setLeakTracing(LeakTracing leaksMode) {
 		this.leakTracing = leaksMode;
 	}
+
+	public int getLeakTraceSampling() {
+		return leakTraceSampling;
+	}
+
+	public void setLeakTraceSampling(final int leakTraceSampling) {
+		this.leakTraceSampling = leakTraceSampling;
+	}
+
+	public int getLeakTraceDepth() {
+		return leakTraceDepth;
+	}
+
+	public void setLeakTraceDepth(final int leakTraceDepth) {
+		this.leakTraceDepth = leakTraceDepth;
+	}
+
+	public long getLeakSuspectMillis() {
+		return leakSuspectMillis;
+	}
+
+	public void setLeakSuspectMillis(final long leakSuspectMillis) {
+		this.leakSuspectMillis = leakSuspectMillis;
+	}
+
+	public int getCallSiteProfileSize() {
+		return callSiteProfileSize;
+	}
+
+	public void setCallSiteProfileSize(final int callSiteProfileSize) {
+		this.callSiteProfileSize = callSiteProfileSize;
+	}
+
+	public List<String> getSkipFrames() {
+		return skipFrames;
+	}
+
+	public void setSkipFrames(final List<String> skipFrames) {
+		this.skipFrames = skipFrames;
+	}
+
+	/**
+	 * Skip frames of this class too, if it's not already skipped
+	 */
+	public void addSkipFrames(final String className) {
+		if (!skipFrames.contains(className)) {
+			skipFrames.add(className);
+		}
+	}
 	
 	public void setFifo (final boolean fifo) {
 		this.fifo= fifo;
 	}
+	
+	public boolean isThreadAffinity() {
+		return threadAffinity;
+	}
+
+	public void setThreadAffinity(final boolean threadAffinity) {
+		this.threadAffinity = threadAffinity;
+	}
+
+	public int getStripes() {
+		return stripes;
+	}
+
+	public void setStripes(final int stripes) {
+		this.stripes = stripes;
+	}
+
+	public boolean isSlotArray() {
+		return slotArray;
+	}
+
+	public void setSlotArray(final boolean slotArray) {
+		this.slotArray = slotArray;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void setVirtualThreads(final boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public boolean isAdaptiveLimit() {
+		return adaptiveLimit;
+	}
+
+	public void setAdaptiveLimit(final boolean adaptiveLimit) {
+		this.adaptiveLimit = adaptiveLimit;
+	}
+
+	public PoolListener getListener() {
+		return listener;
+	}
+
+	public void setListener(final PoolListener listener) {
+		this.listener = listener;
+	}
 }
@@ -0,0 +1,115 @@
+package us.pixelmemory.pool;
+
+/**
+ * Counts of a Pool at one moment.  Each is read from a counter without walking the pool so it's
+ * cheap to poll often.  Counts are read separately so they may be slightly inconsistent with each other.
+ */
+public final class PoolStats {
+	private final String name;
+	private final int open;
+	private final int available;
+	private final int waiting;
+	private final int reserved;
+	private final int opening;
+	private final int limit;
+	private final int queuedCreate;
+	private final int queuedValidate;
+	private final int queuedClose;
+	private final long validations;
+	private final long validationFailures;
+
+	PoolStats(final String name, final int open, final int available, final int waiting, final int reserved, final int opening, final int limit, final int queuedCreate,
+			final int queuedValidate, final int queuedClose, final long validations, final long validationFailures) {
+		this.name = name;
+		this.open = open;
+		this.available = available;
+		this.waiting = waiting;
+		this.reserved = reserved;
+		this.opening = opening;
+		this.limit = limit;
+		this.queuedCreate = queuedCreate;
+		this.queuedValidate = queuedValidate;
+		this.queuedClose = queuedClose;
+		this.validations = validations;
+		this.validationFailures = validationFailures;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return Elements open, in or out of the Pool
+	 */
+	public int getOpen() {
+		return open;
+	}
+
+	/**
+	 * @return Idle elements ready for get()
+	 */
+	public int getAvailable() {
+		return available;
+	}
+
+	/**
+	 * @return Callers and futures waiting for an element
+	 */
+	public int getWaiting() {
+		return waiting;
+	}
+
+	/**
+	 * @return Idle elements held in Reservations
+	 */
+	public int getReserved() {
+		return reserved;
+	}
+
+	/**
+	 * @return Elements being created
+	 */
+	public int getOpening() {
+		return opening;
+	}
+
+	/**
+	 * @return Maximum that may be open now
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return Elements checked out by callers, estimated
+	 */
+	public int getInUse() {
+		return Math.max(0, open - available - reserved);
+	}
+
+	public int getQueuedCreate() {
+		return queuedCreate;
+	}
+
+	public int getQueuedValidate() {
+		return queuedValidate;
+	}
+
+	public int getQueuedClose() {
+		return queuedClose;
+	}
+
+	public long getValidations() {
+		return validations;
+	}
+
+	public long getValidationFailures() {
+		return validationFailures;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolStats [" + name + "] (open=" + open + " available=" + available + " waiting=" + waiting + " reserved=" + reserved + " opening=" + opening + " limit=" + limit
+				+ " queued=" + queuedCreate + '/' + queuedValidate + '/' + queuedClose + " validations=" + validations + " failed=" + validationFailures + ")";
+	}
+}
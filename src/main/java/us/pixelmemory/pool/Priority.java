@@ -0,0 +1,19 @@
+package us.pixelmemory.pool;
+
+/**
+ * Order in which waiting callers receive returned elements.  Waiters of the same priority keep FIFO or LIFO order.
+ */
+public enum Priority {
+	/**
+	 * User facing requests
+	 */
+	INTERACTIVE,
+	/**
+	 * Default
+	 */
+	NORMAL,
+	/**
+	 * Background jobs that only get elements nobody else is waiting for
+	 */
+	BATCH
+}
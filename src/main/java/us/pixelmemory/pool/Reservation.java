@@ -0,0 +1,113 @@
+package us.pixelmemory.pool;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed number of elements held out of the Pool for one job.
+ * Threads of the job share it with get() and takeBack() without competing with other Pool users.
+ * Closing returns the idle elements to the Pool.  Elements taken back after closing go to the Pool.
+ *
+ * @param <T>
+ */
+public final class Reservation<T> implements AutoCloseable {
+	private static final Object RETURNED = new Object(); // Given back to the Pool by close()
+	private final Pool<T, ?> pool;
+	private final Object[] members;
+	private final AtomicReferenceArray<Object> slots; // The member while idle here, null while it's in use
+	private volatile boolean closed = false;
+
+	Reservation(final Pool<T, ?> pool, final List<T> elements) {
+		this.pool = pool;
+		members = elements.toArray();
+		slots = new AtomicReferenceArray<>(members);
+		pool.reserved.addAndGet(members.length);
+	}
+
+	/**
+	 * @return An idle element of the reservation
+	 * @throws IllegalStateException if all are in use or the reservation is closed
+	 */
+	@SuppressWarnings("unchecked")
+	public T get() {
+		if (!closed) {
+			for (int i = 0; i < slots.length(); ++i) {
+				final Object e = slots.get(i);
+				if ((e != null) && (e != RETURNED) && slots.compareAndSet(i, e, null)) {
+					pool.reserved.decrementAndGet();
+					return (T) e;
+				}
+			}
+		}
+		throw new IllegalStateException(closed ? "Reservation closed" : "Reservation exhausted");
+	}
+
+	/**
+	 * Return an element taken with get().  It goes to the Pool if the reservation is closed.
+	 * @throws IllegalArgumentException if the element isn't a member or isn't in use
+	 */
+	public void takeBack(final T e) {
+		final int i = indexOf(e);
+		if (i < 0) {
+			throw new IllegalArgumentException("Not from this reservation: " + e);
+		}
+		if (!slots.compareAndSet(i, null, e)) {
+			throw new IllegalArgumentException("Not in use: " + e);
+		}
+		pool.reserved.incrementAndGet();
+		// close() may have drained before the element went in
+		if (closed && slots.compareAndSet(i, e, RETURNED)) {
+			pool.reserved.decrementAndGet();
+			pool.takeBack(e);
+		}
+	}
+
+	private int indexOf(final T e) {
+		for (int i = 0; i < members.length; ++i) {
+			if (members[i] == e) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Number of elements reserved
+	 */
+	public int size() {
+		return slots.length();
+	}
+
+	/**
+	 * @return Number of idle elements in the reservation
+	 */
+	public int countAvailable() {
+		int count = 0;
+		for (int i = 0; i < slots.length(); ++i) {
+			final Object e = slots.get(i);
+			if ((e != null) && (e != RETURNED)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void close() {
+		closed = true;
+		for (int i = 0; i < slots.length(); ++i) {
+			final Object e = slots.get(i);
+			// Elements in use stay null so that takeBack() can still find their slot
+			if ((e != null) && (e != RETURNED) && slots.compareAndSet(i, e, RETURNED)) {
+				pool.reserved.decrementAndGet();
+				pool.takeBack((T) e);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Reservation [" + pool.getName() + "] (size=" + size() + " available=" + countAvailable() + " closed=" + closed + ")";
+	}
+}
@@ -0,0 +1,77 @@
+package us.pixelmemory.pool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of one servicing thread's metrics since it was created.
+ * Lag is how late a Pool's service() started after it was due or requested.
+ */
+public final class ServicingStats {
+	private final int shard;
+	private final int scheduled;
+	private final long passes;
+	private final long services;
+	private final long serviceNanos;
+	private final long maxServiceNanos;
+	private final long lagNanos;
+	private final long maxLagNanos;
+
+	ServicingStats(final int shard, final int scheduled, final long passes, final long services, final long serviceNanos, final long maxServiceNanos, final long lagNanos, final long maxLagNanos) {
+		this.shard = shard;
+		this.scheduled = scheduled;
+		this.passes = passes;
+		this.services = services;
+		this.serviceNanos = serviceNanos;
+		this.maxServiceNanos = maxServiceNanos;
+		this.lagNanos = lagNanos;
+		this.maxLagNanos = maxLagNanos;
+	}
+
+	public int getShard() {
+		return shard;
+	}
+
+	/**
+	 * @return Pools waiting for their next service
+	 */
+	public int getScheduled() {
+		return scheduled;
+	}
+
+	/**
+	 * @return Wakeups of the servicing thread
+	 */
+	public long getPasses() {
+		return passes;
+	}
+
+	/**
+	 * @return Calls to Pool service()
+	 */
+	public long getServices() {
+		return services;
+	}
+
+	public long getMeanServiceNanos() {
+		return (services > 0) ? serviceNanos / services : 0;
+	}
+
+	public long getMaxServiceNanos() {
+		return maxServiceNanos;
+	}
+
+	public long getMeanLagNanos() {
+		return (services > 0) ? lagNanos / services : 0;
+	}
+
+	public long getMaxLagNanos() {
+		return maxLagNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "ServicingStats [" + shard + "] (scheduled=" + scheduled + " passes=" + passes + " services=" + services
+				+ " service=" + TimeUnit.NANOSECONDS.toMicros(getMeanServiceNanos()) + "us/" + TimeUnit.NANOSECONDS.toMicros(maxServiceNanos) + "us"
+				+ " lag=" + TimeUnit.NANOSECONDS.toMicros(getMeanLagNanos()) + "us/" + TimeUnit.NANOSECONDS.toMicros(maxLagNanos) + "us)";
+	}
+}
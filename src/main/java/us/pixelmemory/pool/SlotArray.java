@@ -0,0 +1,145 @@
+package us.pixelmemory.pool;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed array of idle elements with their times in primitive arrays.  A ready bitset marks
+ * slots holding an idle element and a free bitset marks empty slots.  Claiming a slot is a CAS
+ * clearing its bit, found with Long.numberOfTrailingZeros, so there are no nodes or links.
+ * The lowest ready slot is taken first so use concentrates at the low end and the high end ages
+ * out, like the top and bottom of a stack.
+ *
+ * A claimed slot's times and element belong to the claimer until it calls take() or restore().
+ */
+final class SlotArray<T> {
+	private final AtomicLongArray ready;
+	private final AtomicLongArray free;
+	private final AtomicReferenceArray<T> elements;
+	private final long[] lastUsed;
+	private final long[] lastTested;
+
+	SlotArray(final int capacity) {
+		final int words = (capacity + 63) >>> 6;
+		ready = new AtomicLongArray(words);
+		free = new AtomicLongArray(words);
+		for (int w = 0; w < words; ++w) {
+			final int bits = Math.min(64, capacity - (w << 6));
+			free.set(w, (bits == 64) ? -1L : ((1L << bits) - 1));
+		}
+		elements = new AtomicReferenceArray<>(capacity);
+		lastUsed = new long[capacity];
+		lastTested = new long[capacity];
+	}
+
+	int capacity() {
+		return elements.length();
+	}
+
+	/**
+	 * @return false if there's no free slot
+	 */
+	boolean offer(final T e, final long used, final long tested) {
+		final int i = claimLowest(free);
+		if (i < 0) {
+			return false;
+		}
+		lastUsed[i] = used;
+		lastTested[i] = tested;
+		elements.set(i, e); // Publishes the times
+		setBit(ready, i);
+		return true;
+	}
+
+	/**
+	 * Claim the lowest ready slot
+	 * @return Slot index or -1 if none are ready
+	 */
+	int poll() {
+		return claimLowest(ready);
+	}
+
+	/**
+	 * Claim a ready slot found by a scan
+	 * @return false if it's no longer ready
+	 */
+	boolean tryClaim(final int i) {
+		final int w = i >>> 6;
+		final long bit = 1L << i;
+		long word;
+		while (((word = ready.get(w)) & bit) != 0) {
+			if (ready.compareAndSet(w, word, word & ~bit)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Lowest ready slot at or above i, unclaimed, or -1
+	 */
+	int nextReady(final int i) {
+		if (i >= elements.length()) {
+			return -1;
+		}
+		int w = i >>> 6;
+		long word = ready.get(w) & (-1L << i);
+		while (word == 0) {
+			if (++w >= ready.length()) {
+				return -1;
+			}
+			word = ready.get(w);
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Exact for a claimed slot.  Only an estimate for an unclaimed slot found by a scan.
+	 */
+	long lastUsed(final int i) {
+		return lastUsed[i];
+	}
+
+	long lastTested(final int i) {
+		return lastTested[i];
+	}
+
+	/**
+	 * Empty a claimed slot
+	 * @return Its element
+	 */
+	T take(final int i) {
+		final T e = elements.get(i);
+		elements.lazySet(i, null);
+		setBit(free, i);
+		return e;
+	}
+
+	/**
+	 * Make a claimed slot ready again, unchanged
+	 */
+	void restore(final int i) {
+		setBit(ready, i);
+	}
+
+	private static int claimLowest(final AtomicLongArray bits) {
+		for (int w = 0; w < bits.length(); ++w) {
+			long word;
+			while ((word = bits.get(w)) != 0) {
+				if (bits.compareAndSet(w, word, word & (word - 1))) {
+					return (w << 6) + Long.numberOfTrailingZeros(word);
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static void setBit(final AtomicLongArray bits, final int i) {
+		final int w = i >>> 6;
+		final long bit = 1L << i;
+		long word;
+		do {
+			word = bits.get(w);
+		} while (!bits.compareAndSet(w, word, word | bit));
+	}
+}
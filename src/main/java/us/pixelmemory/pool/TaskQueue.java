@@ -0,0 +1,87 @@
+package us.pixelmemory.pool;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+
+/**
+ * Runs one kind of task for one Pool on a shared Executor with a concurrency cap.
+ * Tasks over the cap wait in a queue so that a hung database can't take every thread.
+ */
+final class TaskQueue {
+	private final Executor exec;
+	private final int maxConcurrent;
+	private final Logger log;
+	private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queued = new AtomicInteger(0);
+	private final AtomicInteger running = new AtomicInteger(0);
+
+	TaskQueue(final Executor exec, final int maxConcurrent, final Logger log) {
+		this.exec = exec;
+		this.maxConcurrent = Math.max(1, maxConcurrent);
+		this.log = log;
+	}
+
+	void execute(final Runnable task) {
+		queue.add(task);
+		queued.incrementAndGet();
+		startWorker();
+	}
+
+	/**
+	 * @return Tasks waiting to start
+	 */
+	int queued() {
+		return queued.get();
+	}
+
+	/**
+	 * @return true if there are as many tasks as can run at once
+	 */
+	boolean isBusy() {
+		return (queued.get() + running.get()) >= maxConcurrent;
+	}
+
+	/**
+	 * @return Tasks running now
+	 */
+	int running() {
+		return running.get();
+	}
+
+	private void startWorker() {
+		int r;
+		while (((r = running.get()) < maxConcurrent) && !queue.isEmpty()) {
+			if (running.compareAndSet(r, r + 1)) {
+				try {
+					exec.execute(this::work);
+				} catch (final RejectedExecutionException err) {
+					running.decrementAndGet();
+					throw err;
+				}
+				return;
+			}
+		}
+	}
+
+	private void work() {
+		try {
+			Runnable task;
+			while ((task = queue.poll()) != null) {
+				queued.decrementAndGet();
+				try {
+					task.run();
+				} catch (final RuntimeException err) {
+					log.warn("Task failed", err);
+				}
+			}
+		} finally {
+			running.decrementAndGet();
+			// A task may have been queued after the last poll, or an Error ended this worker early
+			startWorker();
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package us.pixelmemory.dbPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import us.pixelmemory.pool.Pool;
+import us.pixelmemory.pool.PoolSource;
+import us.pixelmemory.pool.Priority;
+
+public class ConnectionWrapperTest {
+	/**
+	 * Connections that do nothing.  Their statements remember the query timeout and close().
+	 */
+	static class StubSource implements PoolSource<Connection, SQLException> {
+		final List<StubStatement> statements = new CopyOnWriteArrayList<>();
+		final AtomicInteger validations = new AtomicInteger(0);
+
+		@Override
+		public Connection get() {
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+				switch (method.getName()) {
+					case "createStatement":
+						return newStatement(Statement.class);
+					case "prepareStatement":
+						return newStatement(PreparedStatement.class);
+					case "prepareCall":
+						return newStatement(CallableStatement.class);
+					case "getMetaData":
+						return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { DatabaseMetaData.class },
+								(p, m, a) -> "getDatabaseProductName".equals(m.getName()) ? "Stub" : defaultValue(m));
+					default:
+						return defaultValue(method);
+				}
+			});
+		}
+
+		private Object newStatement(final Class<? extends Statement> type) {
+			final StubStatement s = new StubStatement();
+			statements.add(s);
+			return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, s);
+		}
+
+		StubStatement last() {
+			return statements.get(statements.size() - 1);
+		}
+
+		@Override
+		public void takeBack(final Connection element) {
+		}
+
+		@Override
+		public boolean validate(final Connection element) {
+			validations.incrementAndGet();
+			return true;
+		}
+
+		@Override
+		public void shutdown() {
+		}
+	}
+
+	static class StubStatement implements InvocationHandler {
+		volatile int queryTimeout = -1;
+		volatile boolean closed = false;
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) {
+			switch (method.getName()) {
+				case "setQueryTimeout":
+					queryTimeout = ((Integer) args[0]).intValue();
+					return null;
+				case "close":
+					closed = true;
+					return null;
+				default:
+					return defaultValue(method);
+			}
+		}
+	}
+
+	static Object defaultValue(final Method method) {
+		final Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return Boolean.FALSE;
+		} else if (type == int.class) {
+			return Integer.valueOf(0);
+		} else if (type == long.class) {
+			return Long.valueOf(0);
+		}
+		return null;
+	}
+
+	private static Pool<Connection, SQLException> createPool(final String name, final StubSource source) {
+		return createPool(name, source, new DbPoolSettings().setProfile(DbPoolProfile.GENTLE));
+	}
+
+	private static Pool<Connection, SQLException> createPool(final String name, final StubSource source, final DbPoolSettings settings) {
+		settings.setMaxOpen(2);
+		return new Pool<>(name, source, settings);
+	}
+
+	@Test(timeout=60000)
+	public void testDeadlineQueryTimeout() throws SQLException {
+		final StubSource source = new StubSource();
+		final Pool<Connection, SQLException> pool = createPool("testDeadlineQueryTimeout", source);
+		try {
+			// Whole seconds remaining, rounded up
+			try (Connection c = new ConnectionWrapper(pool, ConnectionWrapper.BASIC_RESTORATION, Priority.NORMAL, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2500))) {
+				c.createStatement().close();
+				assertEquals(3, source.last().queryTimeout);
+				c.prepareStatement("SELECT 1").close();
+				assertEquals(3, source.last().queryTimeout);
+				c.prepareCall("CALL X()").close();
+				assertEquals(3, source.last().queryTimeout);
+			}
+
+			// A fraction of a second doesn't become 0, which would mean no timeout
+			try (Connection c = new ConnectionWrapper(pool, ConnectionWrapper.BASIC_RESTORATION, Priority.NORMAL, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300))) {
+				c.createStatement().close();
+				assertEquals(1, source.last().queryTimeout);
+			}
+
+			// A far deadline saturates
+			try (Connection c = new ConnectionWrapper(pool, ConnectionWrapper.BASIC_RESTORATION, Priority.NORMAL, System.nanoTime() + Long.MAX_VALUE)) {
+				c.createStatement().close();
+				assertEquals(Integer.MAX_VALUE, source.last().queryTimeout);
+			}
+
+			// No deadline leaves the driver's default
+			try (Connection c = new ConnectionWrapper(pool, ConnectionWrapper.BASIC_RESTORATION)) {
+				c.createStatement().close();
+				assertEquals(-1, source.last().queryTimeout);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test(timeout=60000)
+	public void testDeadlinePassed() throws SQLException, InterruptedException {
+		final StubSource source = new StubSource();
+		final Pool<Connection, SQLException> pool = createPool("testDeadlinePassed", source);
+		try {
+			try (Connection c = new ConnectionWrapper(pool, ConnectionWrapper.BASIC_RESTORATION, Priority.NORMAL, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50))) {
+				Thread.sleep(100);
+				try {
+					c.createStatement();
+					fail("Deadline passed");
+				} catch (final SQLTimeoutException expected) {
+					// Good
+				}
+				assertTrue(source.last().closed);
+				assertEquals(-1, source.last().queryTimeout);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test(timeout=60000)
+	public void testStatementSkipsValidation() throws SQLException, InterruptedException {
+		final StubSource source = new StubSource();
+		final DbPoolSettings settings = new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setValidateInterval(1000);
+		final Pool<Connection, SQLException> pool = createPool("testStatementSkipsValidation", source, settings);
+		try {
+			// Held past validateInterval, but a statement just succeeded
+			try (Connection c = new ConnectionWrapper(pool, ConnectionWrapper.BASIC_RESTORATION)) {
+				Thread.sleep(1200);
+				try (Statement stm = c.createStatement()) {
+					stm.execute("SELECT 1");
+				}
+			}
+
+			// Held past validateInterval with nothing proving it works
+			try (Connection c = new ConnectionWrapper(pool, ConnectionWrapper.BASIC_RESTORATION)) {
+				Thread.sleep(1200);
+			}
+			for (int i = 0; (i < 100) && (source.validations.get() == 0); ++i) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, source.validations.get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
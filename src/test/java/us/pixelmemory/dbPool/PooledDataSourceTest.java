@@ -0,0 +1,65 @@
+package us.pixelmemory.dbPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class PooledDataSourceTest {
+	private static PooledDataSource createDataSource(final String name, final DbPoolSettings settings) {
+		final JDBCConnectionSettings jdbc = new JDBCConnectionSettings("jdbc:hsqldb:mem:" + name, "org.hsqldb.jdbc.JDBCDriver", "SA", "", null, 5);
+		return new PooledDataSource(name, settings, jdbc, ConnectionWrapper.BASIC_RESTORATION);
+	}
+
+	@Test(timeout=60000)
+	public void testGetConnectionAsync() throws Exception {
+		final DbPoolSettings settings = new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(1);
+		final PooledDataSource ds = createDataSource("testGetConnectionAsync", settings);
+		try {
+			// Completes once the held connection comes back, but not on the thread returning it
+			final Connection held = ds.getConnection();
+			final AtomicReference<Thread> completedOn = new AtomicReference<>();
+			final CompletableFuture<Integer> query = ds.getConnectionAsync().thenApply(c -> {
+				completedOn.set(Thread.currentThread());
+				try (Connection con = c; Statement stm = con.createStatement(); ResultSet rs = stm.executeQuery("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS")) {
+					rs.next();
+					return rs.getInt(1);
+				} catch (final SQLException e) {
+					throw new CompletionException(e);
+				}
+			});
+			held.close();
+			assertEquals(1, query.get(10, TimeUnit.SECONDS).intValue());
+			assertNotNull(completedOn.get());
+			assertTrue(completedOn.get() != Thread.currentThread());
+
+			// Fails after giveUpMillis
+			final Connection heldAgain = ds.getConnection();
+			settings.setGiveUpMillis(300);
+			final long start = System.currentTimeMillis();
+			try {
+				ds.getConnectionAsync().get(10, TimeUnit.SECONDS);
+				fail("Should time out");
+			} catch (final ExecutionException expected) {
+				assertTrue(expected.getCause() instanceof SQLException);
+			}
+			assertTrue((System.currentTimeMillis() - start) >= 300);
+			heldAgain.close();
+		} finally {
+			ds.shutdown();
+		}
+	}
+}
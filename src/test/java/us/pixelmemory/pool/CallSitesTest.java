@@ -0,0 +1,40 @@
+package us.pixelmemory.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class CallSitesTest {
+	@Test
+	public void testInternedUntilFull() {
+		final CallSites sites = new CallSites(Collections.emptyList(), 2);
+		final ObjectTracker.Trace a = siteA(sites);
+		assertEquals("siteA", a.getStackTrace()[0].getMethodName());
+		assertSame(a, siteA(sites));
+		final ObjectTracker.Trace b = siteB(sites);
+		assertSame(b, siteB(sites));
+
+		// Full, so a new site starts the table over and is interned itself
+		final ObjectTracker.Trace c = siteC(sites);
+		assertSame(c, siteC(sites));
+		final ObjectTracker.Trace a2 = siteA(sites);
+		assertNotSame(a, a2);
+		assertSame(a2, siteA(sites));
+	}
+
+	private static ObjectTracker.Trace siteA(final CallSites sites) {
+		return sites.trace(1);
+	}
+
+	private static ObjectTracker.Trace siteB(final CallSites sites) {
+		return sites.trace(1);
+	}
+
+	private static ObjectTracker.Trace siteC(final CallSites sites) {
+		return sites.trace(1);
+	}
+}
@@ -0,0 +1,61 @@
+package us.pixelmemory.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DeadlineHeapTest {
+	@Test
+	public void testScheduleRemovePoll() {
+		final int testSize = 10000;
+
+		final DeadlineHeap<Integer> heap = new DeadlineHeap<>();
+		final Random r = new Random();
+		final ArrayList<DeadlineHeap.Entry<Integer>> entries = new ArrayList<>(testSize);
+		final long base = Long.MAX_VALUE - 5000; // Deadlines wrap like System.nanoTime()
+
+		for (int i = 0; i < testSize; ++i) {
+			final DeadlineHeap.Entry<Integer> e = new DeadlineHeap.Entry<>(Integer.valueOf(i));
+			entries.add(e);
+			heap.schedule(e, base + r.nextInt(10000));
+		}
+
+		// Move and remove some
+		for (int i = 0; i < testSize; i += 3) {
+			heap.schedule(entries.get(i), base + r.nextInt(10000));
+		}
+		for (int i = 1; i < testSize; i += 7) {
+			heap.remove(entries.get(i));
+			assertFalse(entries.get(i).isScheduled());
+		}
+		// Already queued sooner so it shouldn't move
+		final DeadlineHeap.Entry<Integer> early = entries.get(0);
+		heap.schedule(early, base - 1);
+		heap.scheduleBy(early, base + 1);
+		assertEquals(base - 1, heap.nextDeadline());
+
+		final int expected = heap.size();
+		assertNull(heap.pollDue(base - 2));
+
+		int count = 0;
+		long last = Long.MIN_VALUE;
+		Integer owner;
+		while ((owner = heap.pollDue(base + 10000)) != null) {
+			final DeadlineHeap.Entry<Integer> e = entries.get(owner.intValue());
+			assertFalse(e.isScheduled());
+			if (count > 0) {
+				assertTrue((e.deadline - last) >= 0);
+			}
+			last = e.deadline;
+			count++;
+		}
+		assertEquals(expected, count);
+		assertTrue(heap.isEmpty());
+	}
+}
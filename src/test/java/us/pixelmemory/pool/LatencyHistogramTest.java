@@ -0,0 +1,64 @@
+package us.pixelmemory.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+	@Test
+	public void testBuckets() {
+		final Random r = new Random();
+		for (int i = 0; i < 100000; ++i) {
+			final long v = (r.nextLong() >>> 1) >>> r.nextInt(63);
+			final int b = LatencyHistogram.bucket(v);
+			assertTrue(v + " in " + b, (LatencyHistogram.lowest(b) <= v) && (v <= LatencyHistogram.highest(b)));
+			assertTrue(LatencyHistogram.highest(b) - LatencyHistogram.lowest(b) <= (v / LatencyHistogram.SUB_COUNT));
+		}
+		assertEquals(0, LatencyHistogram.bucket(-5));
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testPercentiles() {
+		final LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 1000; ++i) {
+			h.record(i * 1000L);
+		}
+		final LatencySnapshot before = h.snapshot();
+		assertEquals(1000, before.getCount());
+		assertWithin(500_000, before.getPercentileNanos(50));
+		assertWithin(990_000, before.getPercentileNanos(99));
+		assertWithin(1_000_000, before.getMaxNanos());
+		assertWithin(500_500, before.getMeanNanos());
+
+		h.recordZero();
+		h.record(5_000_000);
+		final LatencySnapshot interval = h.snapshot().minus(before);
+		assertEquals(2, interval.getCount());
+		assertEquals(0, interval.getPercentileNanos(50));
+		assertWithin(5_000_000, interval.getPercentileNanos(99));
+	}
+
+	@Test
+	public void testRecordCost() {
+		final LatencyHistogram h = new LatencyHistogram();
+		final int count = 10_000_000;
+		for (int i = 0; i < count; ++i) {
+			h.record(i);
+		}
+		final long start = System.nanoTime();
+		for (int i = 0; i < count; ++i) {
+			h.record(i);
+		}
+		final long perRecord = (System.nanoTime() - start) / count;
+		System.out.println("LatencyHistogram.record() " + perRecord + "ns");
+		assertEquals(2L * count, h.snapshot().getCount());
+	}
+
+	private static void assertWithin(final long expected, final long actual) {
+		assertTrue(expected + " vs " + actual, Math.abs(actual - expected) <= (expected / LatencyHistogram.SUB_COUNT));
+	}
+}
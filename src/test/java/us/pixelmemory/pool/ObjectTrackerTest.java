@@ -1,10 +1,16 @@
 package us.pixelmemory.pool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.lang.ref.ReferenceQueue;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.junit.Test;
 
@@ -61,4 +67,263 @@ public class ObjectTrackerTest {
 
 		assertEquals(Collections.emptyList(), lt.collectLeaks());
 	}
+
+	@Test
+	public void testGrowAndReuse() {
+		final ObjectTracker<Object> lt = new ObjectTracker<>(0);
+		final ArrayList<Object> values = new ArrayList<>();
+		for (int i = 0; i < 10000; ++i) {
+			final Object o = new Object();
+			values.add(o);
+			lt.add(o);
+		}
+		assertEquals(10000, lt.count());
+		assertTrue(lt.capacity() >= 10000);
+		System.out.println(lt.buildCollisionHistogram());
+
+		// Churn through deleted slots
+		final Random r = new Random();
+		for (int i = 0; i < 100000; ++i) {
+			final int idx = r.nextInt(values.size());
+			lt.remove(values.get(idx));
+			final Object o = new Object();
+			values.set(idx, o);
+			lt.add(o);
+		}
+		for (final Object o : values) {
+			assertSame(lt.getTraceRef(o), lt.getTraceRef(o));
+		}
+		for (final Object o : values) {
+			lt.remove(o);
+		}
+		assertEquals(0, lt.count());
+		assertTrue(lt.traceAll().isEmpty());
+	}
+
+	@Test
+	public void testScan() {
+		final ObjectTracker<Object> lt = new ObjectTracker<>(0);
+		final ArrayList<Object> values = new ArrayList<>();
+		for (int i = 0; i < 1000; ++i) {
+			final Object o = new Object();
+			values.add(o);
+			lt.add(o);
+		}
+		final ArrayList<Object> seen = new ArrayList<>();
+		int cursor = 0;
+		int passes = 0;
+		do {
+			cursor = lt.scan(cursor, 100, tr -> seen.add(tr.get()));
+			passes++;
+		} while (cursor != 0);
+		assertEquals(lt.capacity() / 100 + ((lt.capacity() % 100 != 0) ? 1 : 0), passes);
+		assertEquals(values.size(), seen.size());
+		assertTrue(seen.containsAll(values));
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentResize() throws InterruptedException {
+		final ObjectTracker<Object> lt = new ObjectTracker<>(0);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final Thread threads[] = new Thread[4];
+		for (int t = 0; t < threads.length; ++t) {
+			threads[t] = new Thread(() -> {
+				try {
+					final Object mine[] = new Object[2000];
+					for (int round = 0; round < 20; ++round) {
+						for (int i = 0; i < mine.length; ++i) {
+							mine[i] = new Object();
+							lt.add(mine[i]);
+						}
+						for (final Object o : mine) {
+							lt.getTraceRef(o).checkOut(null);
+						}
+						for (final Object o : mine) {
+							lt.remove(o);
+						}
+					}
+				} catch (final Throwable err) {
+					failure.compareAndSet(null, err);
+				}
+			});
+			threads[t].start();
+		}
+		for (final Thread t : threads) {
+			t.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+		assertEquals(0, lt.count());
+	}
+
+	@Test(timeout = 60000)
+	public void testStalledResize() {
+		final ObjectTracker<Object> lt = new ObjectTracker<>(0);
+		final ArrayList<Object> values = new ArrayList<>();
+		for (int i = 0; i < 1000; ++i) {
+			final Object o = new Object();
+			values.add(o);
+			lt.add(o);
+		}
+		final int capacity = lt.capacity();
+
+		// Another thread started a copy and never got to it
+		lt.stallResize();
+		for (int i = 0; i < 1000; ++i) {
+			final Object o = new Object();
+			values.add(o);
+			lt.add(o);
+		}
+		assertTrue(lt.capacity() > capacity);
+		assertEquals(values.size(), lt.count());
+		for (final Object o : values) {
+			assertSame(o, lt.getTraceRef(o).get());
+		}
+		for (final Object o : values) {
+			lt.remove(o);
+		}
+		assertEquals(0, lt.count());
+	}
+
+	/**
+	 * Compares lookups with the copy-on-write bucket table this replaced, at the same load
+	 * the Pool used to run it at.  Early passes are mostly JIT warm-up, so only the last ones mean anything.
+	 */
+	@Test
+	public void testLookupCost() {
+		final int testSize = 1000;
+		final Object values[] = new Object[testSize];
+		final ObjectTracker<Object> lt = new ObjectTracker<>(testSize);
+		final BucketTracker<Object> bt = new BucketTracker<>(3 * testSize);
+		for (int i = 0; i < testSize; ++i) {
+			values[i] = new Object();
+			lt.add(values[i]);
+			bt.add(values[i]);
+		}
+		System.out.println("Open addressing " + lt.buildCollisionHistogram() + ", buckets " + bt.buildCollisionHistogram());
+
+		final int rounds = 5000;
+		long sink = 0;
+		for (int pass = 0; pass < 6; ++pass) {
+			long start = System.nanoTime();
+			for (int r = 0; r < rounds; ++r) {
+				for (final Object o : values) {
+					sink += lt.getTraceRef(o).hash;
+				}
+			}
+			final long openNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int r = 0; r < rounds; ++r) {
+				for (final Object o : values) {
+					sink += bt.find(o).hash;
+				}
+			}
+			final long bucketNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int r = 0; r < rounds / 10; ++r) {
+				for (final Object o : values) {
+					lt.remove(o);
+					lt.add(o);
+				}
+			}
+			final long openChurnNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int r = 0; r < rounds / 10; ++r) {
+				for (final Object o : values) {
+					bt.remove(o);
+					bt.add(o);
+				}
+			}
+			final long bucketChurnNanos = System.nanoTime() - start;
+
+			final long lookups = (long) rounds * testSize;
+			final long churns = (long) (rounds / 10) * testSize;
+			System.out.println("ObjectTracker pass " + pass + " lookup " + (openNanos / lookups) + "ns vs " + (bucketNanos / lookups) + "ns, remove+add " + (openChurnNanos / churns) + "ns vs "
+					+ (bucketChurnNanos / churns) + "ns");
+		}
+		assertEquals(testSize, lt.count());
+		assertTrue(sink != 1);
+	}
+
+	/**
+	 * The previous ObjectTracker table, for comparison.  Like the original, it registers with a
+	 * ReferenceQueue, rejects duplicates, and clears removed references.
+	 */
+	private static final class BucketTracker<T> {
+		final ReferenceQueue<T> queue = new ReferenceQueue<>();
+		final AtomicReferenceArray<ObjectTracker.TraceRef<T>[]> references;
+
+		BucketTracker(final int buckets) {
+			references = new AtomicReferenceArray<>(buckets);
+		}
+
+		@SuppressWarnings("unchecked")
+		void add(final T e) {
+			final int hash = System.identityHashCode(e);
+			final int idx = (hash & Integer.MAX_VALUE) % references.length();
+			final ObjectTracker.TraceRef<T> ref = new ObjectTracker.TraceRef<>(hash, e, queue);
+			ObjectTracker.TraceRef<T>[] old;
+			ObjectTracker.TraceRef<T>[] update;
+			do {
+				old = references.get(idx);
+				final int oldLen = (old != null) ? old.length : 0;
+				update = new ObjectTracker.TraceRef[oldLen + 1];
+				update[0] = ref;
+				for (int i = 0; i < oldLen; ++i) {
+					final ObjectTracker.TraceRef<T> t = old[i];
+					if ((t.hash == hash) && (e == t.get())) {
+						throw new IllegalArgumentException("Duplicate: " + e);
+					}
+					update[i + 1] = t;
+				}
+			} while (!references.compareAndSet(idx, old, update));
+		}
+
+		@SuppressWarnings("unchecked")
+		void remove(final T e) {
+			final int hash = System.identityHashCode(e);
+			final int idx = (hash & Integer.MAX_VALUE) % references.length();
+			ObjectTracker.TraceRef<T>[] old;
+			ObjectTracker.TraceRef<T>[] update;
+			do {
+				old = references.get(idx);
+				update = (old.length > 1) ? new ObjectTracker.TraceRef[old.length - 1] : null;
+				int outPos = 0;
+				for (final ObjectTracker.TraceRef<T> t : old) {
+					if (t.get() != e) {
+						update[outPos++] = t;
+					}
+				}
+			} while (!references.compareAndSet(idx, old, update));
+			for (final ObjectTracker.TraceRef<T> t : old) {
+				if (t.get() == e) {
+					t.clear();
+				}
+			}
+		}
+
+		ObjectTracker.TraceRef<T> find(final T e) {
+			final int hash = System.identityHashCode(e);
+			final int idx = (hash & Integer.MAX_VALUE) % references.length();
+			for (final ObjectTracker.TraceRef<T> t : references.get(idx)) {
+				if ((t.hash == hash) && (e == t.get())) {
+					return t;
+				}
+			}
+			throw new IllegalArgumentException("Not tracked: " + e);
+		}
+
+		TreeMap<Integer, Integer> buildCollisionHistogram() {
+			final TreeMap<Integer, Integer> map = new TreeMap<>();
+			for (int i = 0; i < references.length(); ++i) {
+				final ObjectTracker.TraceRef<T>[] traces = references.get(i);
+				map.merge(Integer.valueOf((traces != null) ? traces.length : 0), Integer.valueOf(1), Integer::sum);
+			}
+			return map;
+		}
+	}
 }
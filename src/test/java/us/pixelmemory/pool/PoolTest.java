@@ -1,29 +1,45 @@
 package us.pixelmemory.pool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
+import org.junit.Assume;
 import org.junit.Test;
 
 import us.pixelmemory.dbPool.DbPoolSettings;
 import us.pixelmemory.dbPool.DbPoolProfile;
+import us.pixelmemory.pool.CallSiteStats;
 import us.pixelmemory.pool.Pool;
+import us.pixelmemory.pool.PoolListener;
 import us.pixelmemory.pool.PoolSource;
+import us.pixelmemory.pool.PoolStats;
 import us.pixelmemory.pool.Taker;
 import us.pixelmemory.pool.PoolSettings.LeakTracing;
 
@@ -169,6 +185,28 @@ public class PoolTest {
 		}
 	}
 	
+	static class InstantSource implements PoolSource<String, RuntimeException> {
+		private final AtomicLong counter = new AtomicLong(0);
+
+		@Override
+		public String get() throws RuntimeException {
+			return String.valueOf(counter.getAndIncrement());
+		}
+
+		@Override
+		public void takeBack(final String element) throws RuntimeException {
+		}
+
+		@Override
+		public boolean validate(final String element) throws RuntimeException {
+			return true;
+		}
+
+		@Override
+		public void shutdown() throws RuntimeException {
+		}
+	}
+	
 	@Test(timeout=240000)
 	public void testBrokenSource () {
 		DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
@@ -238,10 +276,20 @@ public class PoolTest {
 	
 	@Test(timeout=240000)
 	public void testAging() throws InterruptedException, ExecutionException, TimeoutException {
+		aging("testAging", false);
+	}
+
+	@Test(timeout=240000)
+	public void testAgingSlotArray() throws InterruptedException, ExecutionException, TimeoutException {
+		aging("testAgingSlotArray", true);
+	}
+
+	private void aging(final String name, final boolean slotArray) throws InterruptedException, ExecutionException, TimeoutException {
 		DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
 		settings.setValidateInterval(400);
+		settings.setSlotArray(slotArray);
 		
-		final Pool<String, RuntimeException> p = new Pool<>("testAging", new NoReuseSource(), settings);
+		final Pool<String, RuntimeException> p = new Pool<>(name, new NoReuseSource(), settings);
 
 		final ConcurrentHashMap<String, Thread> tracker = new ConcurrentHashMap<>();
 		final Future<Object> results[] = new Future[1000];
@@ -290,10 +338,20 @@ public class PoolTest {
 	
 	@Test(timeout=240000)
 	public void testIdle() throws InterruptedException, ExecutionException, TimeoutException {
+		idle("testIdle", false);
+	}
+
+	@Test(timeout=240000)
+	public void testIdleSlotArray() throws InterruptedException, ExecutionException, TimeoutException {
+		idle("testIdleSlotArray", true);
+	}
+
+	private void idle(final String name, final boolean slotArray) throws InterruptedException, ExecutionException, TimeoutException {
 		DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
 		settings.setMaxIdleMillis(400);
+		settings.setSlotArray(slotArray);
 		
-		final Pool<String, RuntimeException> p = new Pool<>("testIdle", new GoodSource(), settings);
+		final Pool<String, RuntimeException> p = new Pool<>(name, new GoodSource(), settings);
 
 		final ConcurrentHashMap<String, Thread> tracker = new ConcurrentHashMap<>();
 		final Future<Object> results[] = new Future[1000];
@@ -457,6 +515,1513 @@ public class PoolTest {
 		}
 	}
 	
+	@Test(timeout=240000)
+	public void testTakeGetAffinity() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxIdleMillis(100);
+		settings.setGiveUpMillis(60000);
+		settings.setThreadAffinity(true);
+		final GoodSource src= new GoodSource();
+		final Pool<String, RuntimeException> p = new Pool<>("testTakeGetAffinity", src, settings);
+		
+		final ConcurrentHashMap<String, Thread> tracker = new ConcurrentHashMap<>();
+		final Future<Object> results[] = new Future[20000];
+
+		final ExecutorService exec = Executors.newFixedThreadPool(500);
+		try {
+
+			for (int runs = 0; runs < 2; ++runs) {
+				for (int i = 0; i < results.length; ++i) {
+					results[i] = exec.submit(() -> {
+						final Thread t = Thread.currentThread();
+						for (int cycle = 0; cycle < 3; ++cycle) {
+							final String e = p.get();
+							assertNull(tracker.putIfAbsent(e, t));
+							Thread.sleep(1);
+							assertTrue(tracker.remove(e, t));
+							p.takeBack(e);
+						}
+						return null;
+					});
+				}
+
+				for (final Future<Object> result : results) {
+					result.get(5, TimeUnit.MINUTES);
+				}
+			}
+			
+			Thread.sleep(1000);
+
+			assertEquals(0, p.size());
+			assertEquals(0, p.countAvailable());
+			assertEquals(0, p.countOpening());
+			assertEquals(0, p.countWaiting());
+		} finally {
+			System.out.println("shutdown");
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+	
+	@Test(timeout=240000)
+	public void testTakeGetStriped() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxIdleMillis(100);
+		settings.setGiveUpMillis(60000);
+		settings.setStripes(8);
+		final GoodSource src= new GoodSource();
+		final Pool<String, RuntimeException> p = new Pool<>("testTakeGetStriped", src, settings);
+		
+		final ConcurrentHashMap<String, Thread> tracker = new ConcurrentHashMap<>();
+		final Future<Object> results[] = new Future[50000];
+
+		final ExecutorService exec = Executors.newFixedThreadPool(500);
+		try {
+
+			for (int runs = 0; runs < 2; ++runs) {
+				for (int i = 0; i < results.length; ++i) {
+					results[i] = exec.submit(() -> {
+						final Thread t = Thread.currentThread();
+						final String e = p.get();
+						assertNull(tracker.putIfAbsent(e, t));
+						Thread.sleep(5);
+						assertTrue(tracker.remove(e, t));
+						p.takeBack(e);
+						return null;
+					});
+				}
+
+				for (final Future<Object> result : results) {
+					result.get(5, TimeUnit.MINUTES);
+				}
+			}
+			
+			Thread.sleep(1000);
+
+			assertEquals(0, p.size());
+			assertEquals(0, p.countAvailable());
+			assertEquals(0, p.countOpening());
+			assertEquals(0, p.countWaiting());
+		} finally {
+			System.out.println("shutdown");
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	/**
+	 * Benchmark for acquire latency under contention.  Prints percentiles for comparison.
+	 */
+	@Test(timeout=240000)
+	public void testContention() throws InterruptedException, ExecutionException, TimeoutException {
+		for (final boolean slotArray : new boolean[] {false, true}) {
+			for (final int stripes : new int[] {1, 8}) {
+				final long latency[] = acquireLatencies(stripes, slotArray);
+				System.out.println("Stripes=" + stripes + " slotArray=" + slotArray + " p50=" + latency[latency.length / 2] + "ns p99=" + latency[(latency.length * 99) / 100] + "ns p999="
+						+ latency[(latency.length * 999) / 1000] + "ns");
+			}
+		}
+	}
+
+	private long[] acquireLatencies(final int stripes, final boolean slotArray) throws InterruptedException, ExecutionException, TimeoutException {
+		final int threads = 500;
+		final int cycles = 400;
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setOpenConcurrent(50);
+		settings.setGiveUpMillis(60000);
+		settings.setStripes(stripes);
+		settings.setSlotArray(slotArray);
+		final Pool<String, RuntimeException> p = new Pool<>("testContention" + stripes + (slotArray ? "Slots" : ""), new InstantSource(), settings);
+		
+		final long latency[] = new long[threads * cycles];
+		final Future<Object> results[] = new Future[threads];
+		final ExecutorService exec = Executors.newFixedThreadPool(threads);
+		try {
+			for (int warmup = 0; warmup < 2; ++warmup) {
+				for (int i = 0; i < results.length; ++i) {
+					final int offset = i * cycles;
+					results[i] = exec.submit(() -> {
+						for (int c = 0; c < cycles; ++c) {
+							final long t0 = System.nanoTime();
+							final String e = p.get();
+							latency[offset + c] = System.nanoTime() - t0;
+							p.takeBack(e);
+						}
+						return null;
+					});
+				}
+				for (final Future<Object> result : results) {
+					result.get(5, TimeUnit.MINUTES);
+				}
+			}
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+		
+		Arrays.sort(latency);
+		return latency;
+	}
+	
+	@Test(timeout=240000)
+	public void testGetAsync() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(4);
+		final Pool<String, RuntimeException> p = new Pool<>("testGetAsync", new InstantSource(), settings);
+		try {
+			// Many more waiters than elements, completed by takeBack
+			final ConcurrentHashMap<String, Boolean> inUse = new ConcurrentHashMap<>();
+			final CompletableFuture<?> results[] = new CompletableFuture[2000];
+			for (int i = 0; i < results.length; ++i) {
+				results[i] = p.getAsync(60000).thenAccept(e -> {
+					assertNull(inUse.putIfAbsent(e, Boolean.TRUE));
+					inUse.remove(e);
+					p.takeBack(e);
+				});
+			}
+			CompletableFuture.allOf(results).get(1, TimeUnit.MINUTES);
+			assertEquals(0, p.countWaiting());
+			
+			// Hold them all so the next one times out
+			final String held[] = new String[4];
+			for (int i = 0; i < held.length; ++i) {
+				held[i] = p.get();
+			}
+			final long t1 = System.currentTimeMillis();
+			try {
+				p.getAsync(200).get(1, TimeUnit.MINUTES);
+				fail("Should time out");
+			} catch (final ExecutionException ok) {
+				assertTrue(ok.getCause() instanceof TimeoutException);
+			}
+			assertTrue((System.currentTimeMillis() - t1) >= 200);
+
+			// Callbacks don't run on the thread returning the element
+			final AtomicReference<Thread> completedOn = new AtomicReference<>();
+			final CompletableFuture<Void> callback = p.getAsync(60000).thenAccept(e -> {
+				completedOn.set(Thread.currentThread());
+				p.takeBack(e);
+			});
+			p.takeBack(held[0]);
+			callback.get(1, TimeUnit.MINUTES);
+			assertNotNull(completedOn.get());
+			assertTrue(completedOn.get() != Thread.currentThread());
+			held[0] = p.get();
+
+			// A cancelled waiter doesn't take the element
+			final CompletableFuture<String> cancelled = p.getAsync(60000);
+			assertTrue(cancelled.cancel(false));
+			p.takeBack(held[0]);
+			assertEquals(1, p.countAvailable());
+			for (int i = 1; i < held.length; ++i) {
+				p.takeBack(held[i]);
+			}
+			assertEquals(4, p.countAvailable());
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testGetAsyncTaker() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(1);
+		settings.setLeakTracing(LeakTracing.ON);
+		final Pool<String, RuntimeException> p = new Pool<>("testGetAsyncTaker", new InstantSource(), settings);
+		final ExecutorService exec = Executors.newFixedThreadPool(1);
+		try {
+			final String held = p.get();
+			final Thread asker = exec.submit(Thread::currentThread).get(1, TimeUnit.MINUTES);
+			final CompletableFuture<String> async = exec.submit(() -> asyncUser(p)).get(1, TimeUnit.MINUTES);
+			
+			// Handed off on this thread but checked out in the asker's name
+			p.takeBack(held);
+			final String e = async.get(1, TimeUnit.MINUTES);
+			final List<Taker> takers = p.whereAreThey();
+			assertEquals(1, takers.size());
+			assertTrue(takers.get(0).getThread() == asker);
+			assertEquals("asyncUser", takers.get(0).getTrace().getStackTrace()[0].getMethodName());
+			p.takeBack(e);
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	private static CompletableFuture<String> asyncUser(final Pool<String, RuntimeException> p) {
+		return p.getAsync(60000);
+	}
+
+	@Test(timeout=240000)
+	public void testGetMany() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(8);
+		settings.setOpenConcurrent(8);
+		final Pool<String, RuntimeException> p = new Pool<>("testGetMany", new InstantSource(), settings);
+		final ExecutorService exec = Executors.newFixedThreadPool(8);
+		try {
+			final List<String> all = p.getMany(8, 10000);
+			assertEquals(8, all.size());
+			try {
+				p.getMany(1, 200);
+				fail("Should time out");
+			} catch (final TimeoutException ok) {
+				// Good
+			}
+			all.forEach(p::takeBack);
+			assertEquals(8, p.countAvailable());
+			
+			// Jobs that each need more than half would deadlock if they gathered at the same time
+			final Future<?> results[] = new Future[8];
+			for (int i = 0; i < results.length; ++i) {
+				results[i] = exec.submit(() -> {
+					final List<String> batch = p.getMany(5, 60000);
+					assertEquals(5, batch.stream().distinct().count());
+					Thread.sleep(20);
+					batch.forEach(p::takeBack);
+					return null;
+				});
+			}
+			for (final Future<?> result : results) {
+				result.get(1, TimeUnit.MINUTES);
+			}
+			
+			try (final Reservation<String> r = p.reserve(3, 10000)) {
+				assertEquals(3, p.countReserved());
+				assertTrue(p.toString().contains("reserved=3"));
+				final String a = r.get();
+				r.get();
+				r.get();
+				assertEquals(0, p.countReserved());
+				try {
+					r.get();
+					fail("Should be exhausted");
+				} catch (final IllegalStateException ok) {
+					// Good
+				}
+				r.takeBack(a);
+				assertEquals(1, r.countAvailable());
+				assertEquals(1, p.countReserved());
+				try {
+					r.takeBack(a);
+					fail("Already returned");
+				} catch (final IllegalArgumentException ok) {
+					// Good
+				}
+				final String outsider = p.get();
+				try {
+					r.takeBack(outsider);
+					fail("Not a member");
+				} catch (final IllegalArgumentException ok) {
+					// Good
+				} finally {
+					p.takeBack(outsider);
+				}
+				assertEquals(1, r.countAvailable());
+				assertEquals(1, p.countReserved());
+			}
+			assertEquals(0, p.countReserved());
+			assertEquals(6, p.countAvailable());
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testGetManyNoConvoy() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(4);
+		settings.setOpenConcurrent(4);
+		settings.setThreadAffinity(true);
+		final Pool<String, RuntimeException> p = new Pool<>("testGetManyNoConvoy", new InstantSource(), settings);
+		final ExecutorService exec = Executors.newFixedThreadPool(1);
+		try {
+			p.getMany(4, 10000).forEach(p::takeBack);
+			assertTrue(p.getMany(0, 1000).isEmpty()); // Not even the thread's parked element
+
+			final String held1 = p.get();
+			final String held2 = p.get();
+			// Can't be filled until those return so it must not hold the other two meanwhile
+			final Future<List<String>> large = exec.submit(() -> p.getMany(4, 60000));
+			Thread.sleep(100);
+			final List<String> small = p.getMany(2, 1000);
+			assertEquals(2, small.size());
+			assertFalse(large.isDone());
+
+			small.forEach(p::takeBack);
+			p.takeBack(held1);
+			p.takeBack(held2);
+			final List<String> all = large.get(1, TimeUnit.MINUTES);
+			assertEquals(4, all.stream().distinct().count());
+			all.forEach(p::takeBack);
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testPriority() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(1);
+		final Pool<String, RuntimeException> p = new Pool<>("testPriority", new InstantSource(), settings);
+		final ExecutorService exec = Executors.newFixedThreadPool(1);
+		try {
+			final String held = p.get();
+			final Future<String> batch = exec.submit(() -> p.get(Priority.BATCH));
+			while (p.countWaiting() < 1) {
+				Thread.sleep(1);
+			}
+			final CompletableFuture<String> normal = p.getAsync(60000);
+			final CompletableFuture<String> interactive = p.getAsync(60000, Priority.INTERACTIVE);
+			
+			p.takeBack(held);
+			assertEquals(held, interactive.get(1, TimeUnit.MINUTES));
+			assertTrue(!normal.isDone() && !batch.isDone());
+			
+			p.takeBack(interactive.get());
+			assertEquals(held, normal.get(1, TimeUnit.MINUTES));
+			assertTrue(!batch.isDone());
+			
+			p.takeBack(normal.get());
+			assertEquals(held, batch.get(1, TimeUnit.MINUTES));
+			p.takeBack(batch.get());
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testCallerTimeout() throws TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(1);
+		settings.setGiveUpMillis(60000);
+		final Pool<String, RuntimeException> p = new Pool<>("testCallerTimeout", new InstantSource(), settings);
+		try {
+			final String held = p.get(1, TimeUnit.SECONDS);
+			final long t1 = System.currentTimeMillis();
+			try {
+				p.get(50, TimeUnit.MILLISECONDS);
+				fail("Should time out");
+			} catch (final TimeoutException ok) {
+				// Good
+			}
+			final long elapsed = System.currentTimeMillis() - t1;
+			assertTrue("Waited " + elapsed, (elapsed >= 50) && (elapsed < 1000));
+			p.takeBack(held);
+			p.takeBack(p.get(0, TimeUnit.MILLISECONDS));
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testHugeTimeout() throws TimeoutException, InterruptedException, ExecutionException {
+		assertEquals(0, Pool.ceilMillis(0, TimeUnit.NANOSECONDS));
+		assertEquals(1, Pool.ceilMillis(1, TimeUnit.NANOSECONDS));
+		assertEquals(TimeUnit.NANOSECONDS.toMillis(Long.MAX_VALUE), Pool.ceilMillis(Long.MAX_VALUE, TimeUnit.NANOSECONDS));
+		assertEquals(TimeUnit.NANOSECONDS.toMillis(Long.MAX_VALUE), Pool.ceilMillis(Long.MAX_VALUE, TimeUnit.DAYS));
+		assertEquals(Long.MAX_VALUE, Pool.deadlineMillis(Long.MAX_VALUE));
+
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(1);
+		final Pool<String, RuntimeException> p = new Pool<>("testHugeTimeout", new InstantSource(), settings);
+		final ExecutorService exec = Executors.newSingleThreadExecutor();
+		try {
+			// Waits for the first element to open instead of timing out at once
+			final String held = p.get(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+			final Future<String> waiter = exec.submit(() -> {
+				final String e = p.get(Long.MAX_VALUE, TimeUnit.DAYS);
+				p.takeBack(e);
+				return e;
+			});
+			final CompletableFuture<String> async = p.getAsync(Long.MAX_VALUE);
+			final CompletableFuture<Void> asyncDone = async.thenAccept(p::takeBack);
+			for (int i = 0; (i < 100) && (p.countWaiting() < 2); ++i) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(100); // A service pass must not expire the future
+			assertEquals(2, p.countWaiting());
+			assertFalse(async.isDone());
+
+			// Each gets it in turn
+			p.takeBack(held);
+			assertEquals(held, waiter.get(1, TimeUnit.MINUTES));
+			asyncDone.get(1, TimeUnit.MINUTES);
+			p.lease(Long.MAX_VALUE, TimeUnit.MILLISECONDS, Priority.NORMAL).close();
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testAdaptiveLimit() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(50);
+		settings.setOpenConcurrent(2);
+		settings.setAdaptiveLimit(true);
+		final Pool<String, RuntimeException> p = new Pool<>("testAdaptiveLimit", new InstantSource(), settings);
+		assertEquals(2, p.getLimit());
+		
+		final AtomicLong holdMillis = new AtomicLong(5);
+		final AtomicLong stopTime = new AtomicLong(System.currentTimeMillis() + 3000);
+		final Future<?> results[] = new Future[20];
+		final ExecutorService exec = Executors.newFixedThreadPool(results.length);
+		try {
+			for (int i = 0; i < results.length; ++i) {
+				results[i] = exec.submit(() -> {
+					while (System.currentTimeMillis() < stopTime.get()) {
+						final String e = p.get();
+						Thread.sleep(holdMillis.get());
+						p.takeBack(e);
+					}
+					return null;
+				});
+			}
+			Thread.sleep(2500);
+			final int grown = p.getLimit();
+			System.out.println("Fast: " + p);
+			assertTrue("Limit " + grown, (grown > 2) && (grown <= 50));
+			
+			// Database slows down
+			holdMillis.set(60);
+			stopTime.addAndGet(2500);
+			Thread.sleep(2500);
+			System.out.println("Slow: " + p);
+			assertTrue("Limit " + p.getLimit() + " was " + grown, p.getLimit() < grown);
+			for (final Future<?> result : results) {
+				result.get(1, TimeUnit.MINUTES);
+			}
+			assertTrue(p.size() <= 50);
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testAdaptiveLimitSlowClose() throws InterruptedException, ExecutionException, TimeoutException {
+		final AtomicLong closes = new AtomicLong(0);
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(50);
+		settings.setOpenConcurrent(2);
+		settings.setMinIdle(4);
+		settings.setAdaptiveLimit(true);
+		final Pool<String, RuntimeException> p = new Pool<>("testAdaptiveLimitSlowClose", new InstantSource() {
+			@Override
+			public void takeBack(final String element) {
+				closes.incrementAndGet();
+				try {
+					Thread.sleep(3000);
+				} catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}, settings);
+		
+		final AtomicLong holdMillis = new AtomicLong(5);
+		final AtomicLong stopTime = new AtomicLong(System.currentTimeMillis() + 3000);
+		final AtomicLong cycles = new AtomicLong(0);
+		final Future<?> results[] = new Future[20];
+		final ExecutorService exec = Executors.newFixedThreadPool(results.length);
+		try {
+			for (int i = 0; i < results.length; ++i) {
+				results[i] = exec.submit(() -> {
+					while (System.currentTimeMillis() < stopTime.get()) {
+						final String e = p.get(2, TimeUnit.SECONDS); // Fails if shedding starves the callers
+						Thread.sleep(holdMillis.get());
+						p.takeBack(e);
+						cycles.incrementAndGet();
+					}
+					return null;
+				});
+			}
+			Thread.sleep(2500);
+			final int grown = p.size();
+			System.out.println("Fast: " + p);
+			
+			// Database slows down while closing takes longer than several adaptations
+			holdMillis.set(60);
+			stopTime.addAndGet(3000);
+			Thread.sleep(2000);
+			final long before = cycles.get();
+			Thread.sleep(1000);
+			System.out.println("Slow: " + p + " closes=" + closes.get());
+			assertTrue("Limit " + p.getLimit() + " was " + grown, p.getLimit() < grown);
+			final long shed = closes.get() + p.countQueuedClose();
+			assertTrue("Shed " + shed + " of " + grown + " for limit " + p.getLimit(), shed <= (grown - p.getLimit()));
+			assertTrue(cycles.get() > before); // Still serving
+			for (final Future<?> result : results) {
+				result.get(1, TimeUnit.MINUTES);
+			}
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testMinIdle() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMinIdle(5);
+		settings.setOpenConcurrent(1);
+		settings.setMaxIdleMillis(200);
+		final Pool<String, RuntimeException> p = new Pool<>("testMinIdle", new InstantSource(), settings);
+		try {
+			p.warmUp().get(1, TimeUnit.MINUTES);
+			assertEquals(5, p.size());
+			assertEquals(5, p.countAvailable());
+			
+			final List<String> taken = p.getMany(8, 10000);
+			taken.forEach(p::takeBack);
+			assertEquals(8, p.size());
+			
+			// Extras are evicted but not below minIdle
+			for (int i = 0; (i < 100) && (p.size() > 5); ++i) {
+				Thread.sleep(50);
+			}
+			Thread.sleep(500);
+			assertEquals(5, p.size());
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testConcurrentWarmUp() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMinIdle(5);
+		for (int round = 0; round < 50; ++round) {
+			// Opening blocks so that every caller sees the same shortfall
+			final CountDownLatch open = new CountDownLatch(1);
+			final Pool<String, RuntimeException> p = new Pool<>("testConcurrentWarmUp", new InstantSource() {
+				@Override
+				public String get() throws RuntimeException {
+					try {
+						open.await();
+					} catch (final InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+					return super.get();
+				}
+			}, settings);
+			try {
+				final List<CompletableFuture<Void>> warming = Collections.synchronizedList(new ArrayList<>());
+				final CountDownLatch start = new CountDownLatch(1);
+				final List<Thread> threads = new ArrayList<>();
+				for (int i = 0; i < 8; ++i) {
+					final Thread t = new Thread(() -> {
+						try {
+							start.await();
+						} catch (final InterruptedException e) {
+							return;
+						}
+						warming.add(p.warmUp());
+					});
+					t.start();
+					threads.add(t);
+				}
+				start.countDown();
+				for (final Thread t : threads) {
+					t.join();
+				}
+				assertTrue(p.countOpening() + p.size() <= 5);
+				
+				open.countDown();
+				for (final CompletableFuture<Void> f : warming) {
+					f.get(1, TimeUnit.MINUTES);
+				}
+				assertEquals(5, p.size());
+			} finally {
+				p.shutdown();
+			}
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testBoundedClose() throws InterruptedException, TimeoutException {
+		final CountDownLatch hang = new CountDownLatch(1);
+		final AtomicLong closing = new AtomicLong(0);
+		final AtomicLong maxClosing = new AtomicLong(0);
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setCloseConcurrent(2);
+		final Pool<String, RuntimeException> p = new Pool<>("testBoundedClose", new InstantSource() {
+			@Override
+			public void takeBack(final String element) {
+				maxClosing.accumulateAndGet(closing.incrementAndGet(), Math::max);
+				try {
+					hang.await();
+				} catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				closing.decrementAndGet();
+			}
+		}, settings);
+		try {
+			final List<String> taken = p.getMany(10, 10000);
+			taken.forEach(p::abandon);
+			for (int i = 0; (i < 100) && (closing.get() < 2); ++i) {
+				Thread.sleep(10);
+			}
+			assertEquals(8, p.countQueuedClose());
+			assertTrue(p.toString().contains("queued=0/0/8"));
+			
+			hang.countDown();
+			for (int i = 0; (i < 100) && (p.size() > 0); ++i) {
+				Thread.sleep(10);
+			}
+			assertEquals(0, p.countQueuedClose());
+			assertEquals(0, p.size());
+			assertEquals(2, maxClosing.get());
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testValidationPipeline() throws InterruptedException, TimeoutException {
+		final AtomicLong validating = new AtomicLong(0);
+		final AtomicLong maxValidating = new AtomicLong(0);
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setValidateConcurrent(2);
+		settings.setValidateInterval(200);
+		settings.setValidateJitterPercent(50);
+		final Pool<String, RuntimeException> p = new Pool<>("testValidationPipeline", new InstantSource() {
+			@Override
+			public boolean validate(final String element) {
+				maxValidating.accumulateAndGet(validating.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(20);
+				} catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				validating.decrementAndGet();
+				return true;
+			}
+		}, settings);
+		try {
+			p.getMany(20, 10000).forEach(p::takeBack);
+			Thread.sleep(1500);
+			System.out.println(p + " validations=" + p.countValidations() + " mean=" + p.getMeanValidationNanos() + "ns");
+			assertEquals(2, maxValidating.get());
+			assertTrue(p.countValidations() >= 20);
+			assertEquals(0, p.countValidationFailures());
+			assertTrue(p.getMeanValidationNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+			// Waiting for validation doesn't take elements away from callers
+			assertTrue(p.countAvailable() >= 16);
+			assertEquals(20, p.size());
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testCheckInValidation() throws InterruptedException, TimeoutException {
+		final CountDownLatch hang = new CountDownLatch(1);
+		final AtomicLong hung = new AtomicLong(0);
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setValidateConcurrent(1);
+		settings.setValidateInterval(200);
+		settings.setValidateJitterPercent(0);
+		final Pool<String, RuntimeException> p = new Pool<>("testCheckInValidation", new InstantSource() {
+			@Override
+			public boolean validate(final String element) {
+				if (hung.incrementAndGet() == 1) {
+					try {
+						hang.await();
+					} catch (final InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+				return true;
+			}
+		}, settings);
+		try {
+			final List<String> both = p.getMany(2, 10000);
+			p.takeBack(both.get(0));
+			final long deadline = System.currentTimeMillis() + 5000;
+			while ((hung.get() == 0) && (System.currentTimeMillis() < deadline)) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, hung.get()); // Idle validation is stuck and holds the only validateConcurrent slot
+
+			// Held past validateInterval so it's validated at check-in without waiting for that slot
+			p.takeBack(both.get(1));
+			final long validated = System.currentTimeMillis() + 2000;
+			while ((p.countAvailable() == 0) && (System.currentTimeMillis() < validated)) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, p.countAvailable());
+			assertEquals(both.get(1), p.get());
+		} finally {
+			hang.countDown();
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testTakeBackProven() throws InterruptedException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setValidateInterval(200);
+		settings.setValidateJitterPercent(0);
+		final Pool<String, RuntimeException> p = new Pool<>("testTakeBackProven", new InstantSource(), settings);
+		try {
+			String e = p.get();
+			Thread.sleep(300);
+			p.takeBack(e, System.currentTimeMillis());
+			Thread.sleep(50);
+			assertEquals(0, p.countValidations());
+
+			e = p.get();
+			Thread.sleep(300);
+			p.takeBack(e);
+			Thread.sleep(50);
+			assertEquals(1, p.countValidations());
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testLease() throws TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		final Pool<String, RuntimeException> p = new Pool<>("testLease", new InstantSource(), settings);
+		try {
+			final Lease<String> first;
+			final String element;
+			try (Lease<String> l = p.lease()) {
+				first = l;
+				element = l.get();
+				assertTrue(l.isOpen());
+				assertEquals(1, p.size());
+				assertEquals(0, p.countAvailable());
+				assertEquals(1, p.whereAreThey().size());
+			}
+			assertFalse(first.isOpen());
+			assertEquals(1, p.countAvailable());
+			assertEquals(0, p.whereAreThey().size());
+
+			try {
+				first.close();
+				fail("Double close");
+			} catch (final IllegalStateException expected) {
+				// Good
+			}
+			try {
+				first.get();
+				fail("Used after close");
+			} catch (final IllegalStateException expected) {
+				// Good
+			}
+
+			// The same element leased again isn't returned by the stale Lease
+			final Lease<String> second = p.lease();
+			assertEquals(element, second.get());
+			try {
+				first.close();
+				fail("Stale close");
+			} catch (final IllegalStateException expected) {
+				// Good
+			}
+			assertTrue(second.isOpen());
+
+			// takeBack() of the raw element ends its Lease
+			p.takeBack(second.get());
+			assertFalse(second.isOpen());
+			assertEquals(1, p.countAvailable());
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testLatencyHistograms() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		final Pool<String, RuntimeException> p = new Pool<>("testLatencyHistograms", new GoodSource(), settings);
+		try {
+			for (int i = 0; i < 10; ++i) {
+				final String e = p.get();
+				Thread.sleep(20);
+				p.takeBack(e);
+			}
+			final LatencySnapshot acquire = p.getAcquireLatency();
+			final LatencySnapshot hold = p.getHoldLatency();
+			final LatencySnapshot create = p.getCreateLatency();
+			System.out.println("acquire " + acquire + "\nhold " + hold + "\ncreate " + create);
+			assertEquals(10, acquire.getCount());
+			assertTrue(acquire.getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(450)); // Waited for GoodSource once
+			assertEquals(10, hold.getCount());
+			assertTrue(hold.getPercentileNanos(50) >= TimeUnit.MILLISECONDS.toNanos(18));
+			assertTrue(create.getCount() >= 1);
+			assertTrue(create.getPercentileNanos(50) >= TimeUnit.MILLISECONDS.toNanos(450));
+			assertEquals(0, p.getValidateLatency().getCount());
+			
+			// Ready elements from getAsync() and getMany() count too
+			p.takeBack(p.getAsync(60000).get(1, TimeUnit.MINUTES));
+			p.getMany(1, 60000).forEach(p::takeBack);
+			assertEquals(12, p.getAcquireLatency().getCount());
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testListener() throws InterruptedException, ExecutionException, TimeoutException {
+		final ConcurrentHashMap<String, AtomicLong> events = new ConcurrentHashMap<>();
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(1);
+		settings.setValidateInterval(100);
+		settings.setMaxIdleMillis(300);
+		settings.setListener(new PoolListener() {
+			private void count(final String event) {
+				events.computeIfAbsent(event, k -> new AtomicLong()).incrementAndGet();
+			}
+
+			@Override
+			public void onAcquire(final Pool<?, ?> pool, final long waitNanos) {
+				count("acquire");
+			}
+
+			@Override
+			public void onHandOff(final Pool<?, ?> pool, final long waitNanos) {
+				count("handOff");
+			}
+
+			@Override
+			public void onTimeout(final Pool<?, ?> pool, final long waitNanos) {
+				assertTrue("Waited " + waitNanos, waitNanos >= TimeUnit.MILLISECONDS.toNanos(40));
+				count("timeout");
+			}
+
+			@Override
+			public void onCreate(final Pool<?, ?> pool, final long createNanos) {
+				count("create");
+			}
+
+			@Override
+			public void onValidate(final Pool<?, ?> pool, final long validateNanos, final boolean valid) {
+				count("validate");
+			}
+
+			@Override
+			public void onEvict(final Pool<?, ?> pool, final long idleMillis) {
+				assertTrue(idleMillis >= 300);
+				count("evict");
+			}
+		});
+		final Pool<String, RuntimeException> p = new Pool<>("testListener", new InstantSource(), settings);
+		final ExecutorService exec = Executors.newSingleThreadExecutor();
+		try {
+			final String e = p.get();
+			try {
+				p.get(50, TimeUnit.MILLISECONDS);
+				fail("Should time out");
+			} catch (final TimeoutException expected) {
+				// Good
+			}
+			final Future<String> waiter = exec.submit(() -> p.get());
+			Thread.sleep(200);
+			p.takeBack(e); // Held past validateInterval so it's validated, then handed off
+			p.takeBack(waiter.get());
+			Thread.sleep(1500);
+			System.out.println(events);
+			assertEquals(2, events.get("acquire").get());
+			assertEquals(1, events.get("create").get());
+			assertEquals(1, events.get("timeout").get());
+			assertEquals(2, events.get("handOff").get()); // New element to the first get(), then the returned one
+			assertTrue(events.get("validate").get() >= 1);
+			assertEquals(1, events.get("evict").get());
+			
+			// getAsync() and getMany() report the same events
+			final String async = p.getAsync(60000).get(1, TimeUnit.MINUTES); // Waits for a new one
+			p.takeBack(async);
+			p.takeBack(p.getAsync(60000).get(1, TimeUnit.MINUTES)); // Ready
+			final List<String> many = p.getMany(1, 60000);
+			try {
+				p.getAsync(50).get(1, TimeUnit.MINUTES);
+				fail("Should time out");
+			} catch (final ExecutionException expected) {
+				assertTrue(expected.getCause() instanceof TimeoutException);
+			}
+			many.forEach(p::takeBack);
+			System.out.println(events);
+			assertEquals(5, events.get("acquire").get());
+			assertEquals(2, events.get("timeout").get());
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testThrowingListener() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(1);
+		settings.setValidateInterval(100);
+		settings.setMaxIdleMillis(300);
+		settings.setListener(new PoolListener() {
+			@Override
+			public void onAcquire(final Pool<?, ?> pool, final long waitNanos) {
+				throw new IllegalStateException("onAcquire");
+			}
+
+			@Override
+			public void onHandOff(final Pool<?, ?> pool, final long waitNanos) {
+				throw new IllegalStateException("onHandOff");
+			}
+
+			@Override
+			public void onTimeout(final Pool<?, ?> pool, final long waitNanos) {
+				throw new IllegalStateException("onTimeout");
+			}
+
+			@Override
+			public void onCreate(final Pool<?, ?> pool, final long createNanos) {
+				throw new IllegalStateException("onCreate");
+			}
+
+			@Override
+			public void onValidate(final Pool<?, ?> pool, final long validateNanos, final boolean valid) {
+				throw new IllegalStateException("onValidate");
+			}
+
+			@Override
+			public void onEvict(final Pool<?, ?> pool, final long idleMillis) {
+				throw new IllegalStateException("onEvict");
+			}
+		});
+		final Pool<String, RuntimeException> p = new Pool<>("testThrowingListener", new InstantSource(), settings);
+		final ExecutorService exec = Executors.newSingleThreadExecutor();
+		try {
+			final String e = p.get();
+			assertEquals(1, p.size());
+			try {
+				p.get(50, TimeUnit.MILLISECONDS);
+				fail("Should time out");
+			} catch (final TimeoutException expected) {
+				// Good
+			}
+			final Future<String> waiter = exec.submit(() -> p.get());
+			Thread.sleep(200);
+			p.takeBack(e); // Validated, then handed off
+			p.takeBack(waiter.get(1, TimeUnit.MINUTES));
+			assertEquals(1, p.size());
+
+			// Evicted by the servicing thread, which must survive to open another
+			for (int i = 0; (i < 200) && (p.size() > 0); ++i) {
+				Thread.sleep(10);
+			}
+			assertEquals(0, p.size());
+			p.takeBack(p.get(10, TimeUnit.SECONDS));
+			assertEquals(1, p.size());
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testStats() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(8);
+		settings.setThreadAffinity(true);
+		final Pool<String, RuntimeException> p = new Pool<>("testStats", new InstantSource(), settings);
+		final ExecutorService exec = Executors.newFixedThreadPool(2);
+		try {
+			final List<String> all = p.getMany(8, 10000);
+			for (int i = 3; i < all.size(); ++i) {
+				p.takeBack(all.get(i)); // Some parked, some in the ready stack
+			}
+			PoolStats stats = p.getStats();
+			assertEquals(8, stats.getOpen());
+			assertEquals(5, stats.getAvailable());
+			assertEquals(3, stats.getInUse());
+			assertEquals(0, stats.getWaiting());
+
+			final List<String> rest = p.getMany(5, 10000);
+			final Future<String> w1 = exec.submit(() -> p.get());
+			final Future<String> w2 = exec.submit(() -> p.get());
+			final CompletableFuture<String> w3 = p.getAsync(60000);
+			for (int i = 0; (i < 100) && (p.countWaiting() < 3); ++i) {
+				Thread.sleep(10);
+			}
+			stats = p.getStats();
+			System.out.println(stats);
+			assertEquals(0, stats.getAvailable());
+			assertEquals(3, stats.getWaiting());
+
+			w3.cancel(false);
+			assertEquals(2, p.countWaiting());
+			p.takeBack(rest.get(0));
+			p.takeBack(rest.get(1));
+			p.takeBack(w1.get());
+			p.takeBack(w2.get());
+			assertEquals(0, p.countWaiting());
+			assertEquals(2, p.countAvailable());
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	/**
+	 * Benchmark for 10k virtual thread clients sharing a small pool.  Prints carrier thread utilization.
+	 * Skipped before Java 21.  mvn test -Pvirtual-threads runs it alone on Java 21+.
+	 */
+	@Test(timeout=240000)
+	public void testVirtualThreadClients() throws InterruptedException, ExecutionException, TimeoutException {
+		Assume.assumeTrue("Needs Java 21+.  Run it with mvn test -Pvirtual-threads", Pool.isVirtualThreadsAvailable());
+		final int clients = 10000;
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(50);
+		settings.setGiveUpMillis(60000);
+		settings.setVirtualThreads(true);
+		final Pool<String, RuntimeException> p = new Pool<>("testVirtualThreadClients", new InstantSource(), settings);
+		
+		final com.sun.management.OperatingSystemMXBean os = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+		final Future<?> results[] = new Future[clients];
+		final ExecutorService exec = Pool.newVirtualExecutor();
+		try {
+			final long cpu0 = os.getProcessCpuTime();
+			final long t0 = System.nanoTime();
+			for (int i = 0; i < results.length; ++i) {
+				results[i] = exec.submit(() -> {
+					final String e = p.get();
+					Thread.sleep(1);
+					p.takeBack(e);
+					return null;
+				});
+			}
+			final long carriers = Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().startsWith("ForkJoinPool")).count();
+			for (final Future<?> result : results) {
+				result.get(5, TimeUnit.MINUTES);
+			}
+			final long wall = System.nanoTime() - t0;
+			final long cpu = os.getProcessCpuTime() - cpu0;
+			System.out.println("Clients=" + clients + " carriers=" + carriers + " wall=" + TimeUnit.NANOSECONDS.toMillis(wall) + "ms carrier utilization="
+					+ ((100 * cpu) / (wall * Runtime.getRuntime().availableProcessors())) + "%");
+			assertEquals(0, p.countWaiting());
+		} finally {
+			p.shutdown();
+			exec.shutdown();
+		}
+	}
+
+	/**
+	 * Uncontended get/takeBack should not allocate once warmed up.
+	 */
+	@Test(timeout=240000)
+	public void testSteadyStateAllocation() throws TimeoutException {
+		final java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(mx instanceof com.sun.management.ThreadMXBean);
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) mx;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		for (final boolean slotArray : new boolean[] {false, true}) {
+			final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+			settings.setLeakTracing(LeakTracing.OFF);
+			settings.setSlotArray(slotArray);
+			final Pool<String, RuntimeException> p = new Pool<>("testSteadyStateAllocation" + slotArray, new InstantSource(), settings);
+			try {
+				for (int i = 0; i < 100000; ++i) {
+					p.takeBack(p.get());
+				}
+				final long id = Thread.currentThread().getId();
+				final long before = threads.getThreadAllocatedBytes(id);
+				final long start = System.nanoTime();
+				for (int i = 0; i < 100000; ++i) {
+					p.takeBack(p.get());
+				}
+				final long took = System.nanoTime() - start;
+				final long allocated = threads.getThreadAllocatedBytes(id) - before;
+				System.out.println("slotArray=" + slotArray + " allocated " + allocated + " bytes, " + (took / 100000) + "ns per cycle for 100000 cycles");
+				assertTrue("Allocated " + allocated, allocated < 100000);
+			} finally {
+				p.shutdown();
+			}
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testThreadChurn() throws InterruptedException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(4);
+		final Pool<String, RuntimeException> p = new Pool<>("testThreadChurn", new InstantSource(), settings);
+		try {
+			final Thread threads[] = new Thread[50];
+			for (int round = 0; round < 200; ++round) {
+				for (int i = 0; i < threads.length; ++i) {
+					threads[i] = new Thread(() -> {
+						try {
+							p.takeBack(p.get());
+						} catch (final TimeoutException err) {
+							throw new RuntimeException(err);
+						}
+					});
+					threads[i].start();
+				}
+				for (final Thread t : threads) {
+					t.join();
+				}
+			}
+			// 10000 threads came and went
+			System.out.println("Thread records " + p.countLocals() + ", Node and Waiting records " + p.countRecords());
+			assertTrue("Thread records " + p.countLocals(), p.countLocals() < 1000);
+			assertTrue("Records " + p.countRecords(), p.countRecords() < 2000);
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testShortLivedThreads() throws InterruptedException, ExecutionException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(8);
+		settings.setVirtualThreads(true);
+		final Pool<String, RuntimeException> p = new Pool<>("testShortLivedThreads", new InstantSource(), settings);
+		// One thread per task, virtual when available
+		final ExecutorService virtual = Pool.newVirtualExecutor();
+		final Executor perTask = (virtual != null) ? virtual : r -> new Thread(r).start();
+		try {
+			final Semaphore running = new Semaphore(200);
+			final AtomicLong failures = new AtomicLong();
+			for (int i = 0; i < 50000; ++i) {
+				running.acquire();
+				perTask.execute(() -> {
+					try {
+						p.takeBack(p.get());
+					} catch (final Throwable err) {
+						failures.incrementAndGet();
+					} finally {
+						running.release();
+					}
+				});
+			}
+			running.acquire(200);
+			System.out.println("Virtual=" + (virtual != null) + " thread records " + p.countLocals() + ", Node and Waiting records " + p.countRecords());
+			assertEquals(0, failures.get());
+			assertTrue("Thread records " + p.countLocals(), p.countLocals() < 2000);
+			assertTrue("Records " + p.countRecords(), p.countRecords() < 2000);
+
+			// An ended thread isn't kept by its record
+			Thread t = new Thread(() -> {
+				try {
+					p.takeBack(p.get());
+				} catch (final TimeoutException err) {
+					throw new RuntimeException(err);
+				}
+			});
+			t.start();
+			t.join();
+			final WeakReference<Thread> ended = new WeakReference<>(t);
+			t = null;
+			for (int i = 0; (i < 100) && (ended.get() != null); ++i) {
+				System.gc();
+				Thread.sleep(10);
+			}
+			assertNull(ended.get());
+		} finally {
+			p.shutdown();
+			if (virtual != null) {
+				virtual.shutdown();
+			}
+		}
+	}
+
+	@Test
+	public void testServiceRequestBurst() throws InterruptedException {
+		final java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(mx instanceof com.sun.management.ThreadMXBean);
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) mx;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		final Pool<String, RuntimeException> p = new Pool<>("testServiceRequestBurst", new InstantSource(), settings);
+		try {
+			final int burst = 500;
+			for (int j = 0; j < burst; ++j) {
+				p.servicing.request(p); // Warm up
+			}
+			final long id = Thread.currentThread().getId();
+			final long queuedBefore = p.countServiceQueued();
+			final long passesBefore = p.servicing.countPasses();
+			final long before = threads.getThreadAllocatedBytes(id);
+			for (int i = 0; i < 100; ++i) {
+				for (int j = 0; j < burst; ++j) {
+					p.servicing.request(p);
+				}
+				Thread.sleep(10);
+			}
+			final long allocated = threads.getThreadAllocatedBytes(id) - before;
+			final long queued = p.countServiceQueued() - queuedBefore;
+			final long passes = p.servicing.countPasses() - passesBefore;
+			System.out.println("100 bursts of " + burst + ": queued " + queued + ", servicing passes " + passes + ", allocated " + allocated + " bytes");
+			// Each enqueue is taken by one servicing pass, however many requests arrived meanwhile
+			assertTrue("Queued " + queued + " passes " + passes, queued <= (passes + 1));
+			assertTrue("Queued " + queued, queued < (100 * burst / 10));
+			assertTrue("Allocated " + allocated, allocated < 100000);
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test
+	public void testServicingStats() throws TimeoutException, InterruptedException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		final Pool<String, RuntimeException> p = new Pool<>("testServicingStats", new InstantSource(), settings);
+		try {
+			p.takeBack(p.get());
+			Thread.sleep(100);
+			final List<ServicingStats> stats = Pool.getServicingStats();
+			System.out.println(stats);
+			assertEquals(Integer.getInteger(Pool.SERVICING_THREADS_PROPERTY, 1).intValue(), stats.size());
+			assertTrue(stats.stream().mapToLong(ServicingStats::getServices).sum() > 0);
+			assertTrue(stats.stream().allMatch(st -> st.getMaxLagNanos() >= st.getMeanLagNanos()));
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testServicingSurvivesFailure() throws InterruptedException, TimeoutException {
+		final DbPoolSettings settings= new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setMaxOpen(1);
+		final Pool<String, RuntimeException> p = new Pool<>("testServicingSurvivesFailure", new InstantSource(), settings);
+		Pool<String, RuntimeException> broken = null;
+		try {
+			final String held = p.get();
+			final CompletableFuture<String> expiring = p.getAsync(1000);
+			// Shares the servicing thread and fails in it when shut down
+			do {
+				if (broken != null) {
+					broken.shutdown();
+				}
+				broken = new Pool<>("testServicingSurvivesFailureBroken", new InstantSource() {
+					@Override
+					public void shutdown() throws RuntimeException {
+						throw new IllegalStateException("Test shutdown failure");
+					}
+				}, settings);
+			} while (broken.servicing != p.servicing);
+			broken.shutdown();
+			try {
+				expiring.get(1, TimeUnit.MINUTES);
+				fail("Should time out");
+			} catch (final ExecutionException expected) {
+				assertTrue(expected.getCause() instanceof TimeoutException);
+			} catch (final TimeoutException err) {
+				fail("Servicing stopped");
+			}
+			p.takeBack(held);
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testLeakTraceSampling() throws TimeoutException {
+		final DbPoolSettings settings = new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setLeakTracing(LeakTracing.ON);
+		settings.setLeakTraceDepth(3);
+		final Pool<String, RuntimeException> p = new Pool<>("testLeakTraceSampling", new InstantSource(), settings);
+		try {
+			final String held[] = new String[2];
+			for (int i = 0; i < held.length; ++i) {
+				held[i] = p.get();
+			}
+			final List<Taker> takers = p.whereAreThey();
+			assertEquals(2, takers.size());
+			final Throwable trace = takers.get(0).getTrace();
+			assertNotNull(trace);
+			assertEquals(3, trace.getStackTrace().length);
+			assertEquals(PoolTest.class.getName(), trace.getStackTrace()[0].getClassName());
+			assertTrue(trace == takers.get(1).getTrace()); // Same call site is interned
+			final StringWriter printed = new StringWriter();
+			trace.printStackTrace(new PrintWriter(printed));
+			assertFalse(printed.toString().contains(Pool.class.getName() + '.')); // Trimmed for printing too
+			p.takeBack(held[0]);
+			p.takeBack(held[1]);
+			for (int i = 0; i < 10000; ++i) {
+				p.takeBack(p.get());
+			}
+			System.out.println("Every checkout traced: " + p.getLeakTraceNanosPerCheckout() + "ns per checkout");
+			assertEquals(10002, p.countLeakTraces());
+		} finally {
+			p.shutdown();
+		}
+
+		settings.setLeakTraceSampling(10);
+		final Pool<String, RuntimeException> sampled = new Pool<>("testLeakTraceSampling10", new InstantSource(), settings);
+		try {
+			for (int i = 0; i < 10000; ++i) {
+				sampled.takeBack(sampled.get());
+			}
+			System.out.println("1 in 10 traced: " + sampled.getLeakTraceNanosPerCheckout() + "ns per checkout");
+			assertTrue(sampled.countLeakTraces() > 500);
+			assertTrue(sampled.countLeakTraces() < 2000);
+		} finally {
+			sampled.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testSkipFrames() throws TimeoutException {
+		final DbPoolSettings settings = new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setLeakTracing(LeakTracing.ON);
+		final Pool<String, RuntimeException> plain = new Pool<>("testSkipFramesPlain", new InstantSource(), settings);
+		try {
+			final String e = new Wrapper(plain).get();
+			assertEquals("get", plain.whereAreThey().get(0).getTrace().getStackTrace()[0].getMethodName());
+			plain.takeBack(e);
+		} finally {
+			plain.shutdown();
+		}
+
+		settings.addSkipFrames(Wrapper.class.getName());
+		settings.addSkipFrames(Wrapper.class.getName());
+		assertEquals(1, settings.getSkipFrames().size());
+		final Pool<String, RuntimeException> p = new Pool<>("testSkipFrames", new InstantSource(), settings);
+		try {
+			final String e = new Wrapper(p).get();
+			assertEquals("testSkipFrames", p.whereAreThey().get(0).getTrace().getStackTrace()[0].getMethodName());
+			p.takeBack(e);
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	/**
+	 * Stands in for an application's wrapper around the Pool
+	 */
+	private static final class Wrapper {
+		private final Pool<String, RuntimeException> p;
+
+		Wrapper(final Pool<String, RuntimeException> p) {
+			this.p = p;
+		}
+
+		String get() throws TimeoutException {
+			return p.get();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testCallSiteProfile() throws TimeoutException, InterruptedException {
+		final DbPoolSettings settings = new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setCallSiteProfileSize(2);
+		final Pool<String, RuntimeException> p = new Pool<>("testCallSiteProfile", new InstantSource(), settings);
+		try {
+			assertTrue(p.getCallSiteProfile().isEmpty());
+			for (int i = 0; i < 4; ++i) {
+				slowUser(p);
+			}
+			for (int i = 0; i < 100; ++i) {
+				quickUser(p);
+			}
+			List<CallSiteStats> profile = p.getCallSiteProfile();
+			System.out.println(profile);
+			assertEquals(2, profile.size());
+			assertEquals("slowUser", profile.get(0).getSite().getMethodName());
+			assertEquals(4, profile.get(0).getCheckOuts());
+			assertTrue(profile.get(0).getHoldNanos() >= TimeUnit.MILLISECONDS.toNanos(4 * 19));
+			assertEquals("quickUser", profile.get(1).getSite().getMethodName());
+			assertEquals(100, profile.get(1).getCheckOuts());
+
+			// A new site replaces the lightest one, not the heaviest, once the servicing thread ranks it
+			p.takeBack(p.get());
+			final long deadline = System.currentTimeMillis() + 5000;
+			while (!p.getCallSiteProfile().get(1).getSite().getMethodName().equals("testCallSiteProfile") && (System.currentTimeMillis() < deadline)) {
+				Thread.sleep(10);
+			}
+			profile = p.getCallSiteProfile();
+			assertEquals(2, profile.size());
+			assertEquals("slowUser", profile.get(0).getSite().getMethodName());
+			assertEquals("testCallSiteProfile", profile.get(1).getSite().getMethodName());
+			assertTrue(profile.get(1).getErrorNanos() > 0);
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	@Test(timeout=240000)
+	public void testCallSiteProfileSampling() throws TimeoutException {
+		final DbPoolSettings settings = new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setCallSiteProfileSize(2);
+		settings.setLeakTraceSampling(10);
+		final Pool<String, RuntimeException> p = new Pool<>("testCallSiteProfileSampling", new InstantSource(), settings);
+		try {
+			for (int i = 0; i < 10000; ++i) {
+				quickUser(p);
+			}
+			final List<CallSiteStats> profile = p.getCallSiteProfile();
+			System.out.println(profile);
+			assertEquals(1, profile.size());
+			assertEquals("quickUser", profile.get(0).getSite().getMethodName());
+			// Each sampled checkout stands for 10
+			assertEquals(0, profile.get(0).getCheckOuts() % 10);
+			assertTrue(profile.get(0).getCheckOuts() > 5000);
+			assertTrue(profile.get(0).getCheckOuts() < 15000);
+		} finally {
+			p.shutdown();
+		}
+	}
+
+	private static void slowUser(final Pool<String, RuntimeException> p) throws TimeoutException, InterruptedException {
+		final String e = p.get();
+		Thread.sleep(20);
+		p.takeBack(e);
+	}
+
+	private static void quickUser(final Pool<String, RuntimeException> p) throws TimeoutException {
+		p.takeBack(p.get());
+	}
+
+	@Test(timeout=240000)
+	public void testLeakScan() throws TimeoutException, InterruptedException {
+		final AtomicLong suspected = new AtomicLong();
+		final DbPoolSettings settings = new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
+		settings.setLeakTracing(LeakTracing.AUTO);
+		settings.setLeakSuspectMillis(200);
+		settings.setListener(new PoolListener() {
+			@Override
+			public void onSuspectedLeak(final Pool<?, ?> pool, final Taker taker, final long heldMillis) {
+				assertTrue("Held " + heldMillis, heldMillis >= 200);
+				assertNotNull(taker.getThread());
+				suspected.incrementAndGet();
+			}
+		});
+		final Pool<String, RuntimeException> p = new Pool<>("testLeakScan", new InstantSource(), settings);
+		try {
+			p.takeBack(p.get());
+			final String held = p.get();
+			assertNull(p.whereAreThey().get(0).getTrace());
+			Thread.sleep(100);
+			assertEquals(0, p.countSuspectedLeaks());
+
+			// Reported once however many scans see it
+			final long deadline = System.currentTimeMillis() + 5000;
+			while ((p.countSuspectedLeaks() == 0) && (System.currentTimeMillis() < deadline)) {
+				Thread.sleep(20);
+			}
+			Thread.sleep(500);
+			assertEquals(1, p.countSuspectedLeaks());
+			assertEquals(1, suspected.get());
+
+			// Tracing escalated for new checkouts
+			p.takeBack(held);
+			final String traced = p.get();
+			assertNotNull(p.whereAreThey().get(0).getTrace());
+			p.takeBack(traced);
+			assertEquals(1, p.countSuspectedLeaks());
+		} finally {
+			p.shutdown();
+		}
+	}
+
 	@Test(timeout=240000)
 	public void testWhereAreThey() throws InterruptedException, ExecutionException, TimeoutException {
 		DbPoolSettings settings = new DbPoolSettings().setProfile(DbPoolProfile.GENTLE);
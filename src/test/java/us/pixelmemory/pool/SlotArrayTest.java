@@ -0,0 +1,65 @@
+package us.pixelmemory.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SlotArrayTest {
+	@Test
+	public void testOfferPoll() {
+		final SlotArray<String> slots = new SlotArray<>(130);
+		for (int i = 0; i < 130; ++i) {
+			assertTrue(slots.offer("e" + i, i, i + 1000));
+		}
+		assertFalse(slots.offer("full", 0, 0));
+
+		// Lowest first
+		final int first = slots.poll();
+		assertEquals(0, first);
+		assertEquals(0, slots.lastUsed(first));
+		assertEquals(1000, slots.lastTested(first));
+		assertEquals("e0", slots.take(first));
+		assertTrue(slots.offer("again", 5, 6));
+		assertEquals(0, slots.poll());
+		assertEquals("again", slots.take(0));
+
+		final Set<String> seen = new HashSet<>();
+		int i;
+		while ((i = slots.poll()) >= 0) {
+			assertTrue(seen.add(slots.take(i)));
+		}
+		assertEquals(129, seen.size());
+		assertEquals(-1, slots.nextReady(0));
+	}
+
+	@Test
+	public void testScanClaimRestore() {
+		final SlotArray<String> slots = new SlotArray<>(200);
+		for (int i = 0; i < 200; ++i) {
+			slots.offer("e" + i, i, i);
+		}
+		// Take every other one out
+		for (int i = 0; i < 200; i += 2) {
+			assertTrue(slots.tryClaim(i));
+			slots.take(i);
+		}
+		int count = 0;
+		for (int i = slots.nextReady(0); i >= 0; i = slots.nextReady(i + 1)) {
+			assertEquals(1, i & 1);
+			count++;
+		}
+		assertEquals(100, count);
+
+		assertTrue(slots.tryClaim(63));
+		assertFalse(slots.tryClaim(63));
+		assertEquals(65, slots.nextReady(62 + 2));
+		slots.restore(63);
+		assertEquals(63, slots.nextReady(62));
+		assertEquals(1, slots.poll());
+	}
+}
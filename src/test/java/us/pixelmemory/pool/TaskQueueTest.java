@@ -0,0 +1,40 @@
+package us.pixelmemory.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+public class TaskQueueTest {
+	@Test(timeout=60000)
+	public void testErrorDoesNotStrandQueue() throws InterruptedException {
+		final ExecutorService exec = Executors.newFixedThreadPool(2);
+		try {
+			final TaskQueue q = new TaskQueue(exec, 1, LoggerFactory.getLogger(TaskQueueTest.class));
+			final CountDownLatch release = new CountDownLatch(1);
+			final CountDownLatch ran = new CountDownLatch(1);
+			q.execute(() -> {
+				try {
+					release.await();
+				} catch (final InterruptedException err) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			q.execute(() -> {
+				throw new AssertionError("Test driver failure");
+			});
+			q.execute(ran::countDown);
+			release.countDown();
+			assertTrue(ran.await(10, TimeUnit.SECONDS));
+			assertEquals(0, q.queued());
+		} finally {
+			exec.shutdown();
+		}
+	}
+}